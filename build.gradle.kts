@@ -2,6 +2,7 @@ plugins {
     id("java")
     id("org.jetbrains.kotlin.jvm") version "1.7.20"
     id("org.jetbrains.intellij") version "1.13.1"
+    id("me.champeau.jmh") version "0.6.8"
 }
 
 group = "com.viewer"
@@ -11,6 +12,10 @@ repositories {
     mavenCentral()
 }
 
+dependencies {
+    testImplementation("junit:junit:4.13.2")
+}
+
 // Configure Gradle IntelliJ Plugin
 // Read more: https://plugins.jetbrains.com/docs/intellij/tools-gradle-intellij-plugin.html
 intellij {
@@ -18,7 +23,26 @@ intellij {
     // version.set("2023.1")
     // type.set("IC") // Target IDE Platform
 
-    plugins.set(listOf("com.intellij.java"/* Plugin Dependencies */))
+    plugins.set(listOf("com.intellij.java", "org.intellij.groovy"/* Plugin Dependencies */))
+}
+
+// Benchmarks live in src/jmh/java, run them with ./gradlew jmh
+// Results land in build/results/jmh/results.json, keep them to compare runs over time
+jmh {
+    jmhVersion.set("1.36")
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    // -Pjmh.includes=JsonTreeBuilder runs a single benchmark class
+    if (project.hasProperty("jmh.includes")) {
+        includes.add(project.property("jmh.includes").toString())
+    }
+}
+
+configurations {
+    // The IDE jars are compileOnly for the plugin, but the benchmarks run outside the IDE and need them on the classpath
+    named("jmhRuntimeClasspath") {
+        extendsFrom(compileOnly.get())
+    }
 }
 
 tasks {
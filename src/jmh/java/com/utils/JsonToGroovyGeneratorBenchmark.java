@@ -0,0 +1,57 @@
+package com.utils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.viewer.JsonFixtures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class generation straight from the fixture file. Parsing and inference are one streaming pass, so each
+ * invocation reads the whole file and the heap stays flat whatever the fixture size. Array elements are inferred
+ * on the common pool, so the score depends on the number of cores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx512m")
+public class JsonToGroovyGeneratorBenchmark {
+
+    @Param({"DEEP", "WIDE", "LARGE_ARRAY", "HETEROGENEOUS"})
+    public JsonFixtures.Shape shape;
+
+    @Param({"1", "16", "256", "1024"})
+    public int sizeMb;
+
+    private final JsonFactory factory = new JsonFactory();
+    private final JsonToGroovyGenerator generator = new JsonToGroovyGenerator();
+    private Path file;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = JsonFixtures.get(shape, sizeMb);
+    }
+
+    @Benchmark
+    public Map<String, Map<String, String>> inferClasses() throws IOException {
+        try (JsonParser parser = factory.createParser(file.toFile())) {
+            return generator.inferClasses(parser, "ContextRoot");
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.viewer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Random;
+
+/**
+ * Generated JSON inputs for the benchmarks. Each fixture is a top-level array of elements of one shape, written
+ * until it reaches the requested size. The content only depends on shape and size, so files are generated once
+ * into the temp directory and reused by later runs.
+ */
+public final class JsonFixtures {
+
+    public enum Shape {
+        /** Objects nested 64 levels deep, with an array every 8 levels. */
+        DEEP,
+        /** Objects with 1000 keys each, drawn from a pool of 5000. */
+        WIDE,
+        /** Many small records of the same shape. */
+        LARGE_ARRAY,
+        /** Elements of every type, objects with random subsets of optional fields. */
+        HETEROGENEOUS
+    }
+
+    private static final Path DIRECTORY = Paths.get(System.getProperty("java.io.tmpdir"), "variableViewer-jmh");
+    private static final int DEEP_LEVELS = 64;
+    private static final int WIDE_KEYS = 1000;
+    private static final String[] OPTIONAL_FIELDS = {
+            "code", "name", "price", "tags", "owner", "createdAt", "score", "active", "parentId", "attributes",
+            "history", "notes", "rating", "location", "children", "status", "version", "checksum", "labels", "extra"
+    };
+
+    private JsonFixtures() {
+    }
+
+    public static Path get(Shape shape, int sizeMb) throws IOException {
+        long targetBytes = (long) sizeMb << 20;
+        Path file = DIRECTORY.resolve(shape.name().toLowerCase() + "-" + sizeMb + "mb.json");
+        if (Files.isRegularFile(file) && Files.size(file) >= targetBytes) {
+            return file;
+        }
+        Files.createDirectories(DIRECTORY);
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            write(writer, shape, targetBytes);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        return file;
+    }
+
+    private static void write(Writer writer, Shape shape, long targetBytes) throws IOException {
+        Random random = new Random(42);
+        StringBuilder element = new StringBuilder(1 << 16);
+        // Everything written is ASCII, so chars and bytes agree
+        long written = 1;
+        writer.write('[');
+        for (int i = 0; written < targetBytes; i++) {
+            element.setLength(0);
+            if (i > 0) {
+                element.append(',');
+            }
+            switch (shape) {
+                case DEEP:
+                    deep(element, i, 0);
+                    break;
+                case WIDE:
+                    wide(element, random);
+                    break;
+                case LARGE_ARRAY:
+                    record(element, i, random);
+                    break;
+                case HETEROGENEOUS:
+                    heterogeneous(element, i, random, 0);
+                    break;
+            }
+            element.append('\n');
+            writer.append(element);
+            written += element.length();
+        }
+        writer.write(']');
+    }
+
+    private static void deep(StringBuilder sb, int id, int level) {
+        sb.append("{\"id\":").append(id).append(",\"name\":\"level").append(level).append('"');
+        if (level == DEEP_LEVELS - 1) {
+            sb.append(",\"leaf\":true}");
+            return;
+        }
+        if (level % 8 == 7) {
+            sb.append(",\"items\":[");
+            deep(sb, id, level + 1);
+            sb.append("]}");
+        } else {
+            sb.append(",\"level").append(level + 1).append("\":");
+            deep(sb, id, level + 1);
+            sb.append('}');
+        }
+    }
+
+    private static void wide(StringBuilder sb, Random random) {
+        sb.append('{');
+        for (int i = 0; i < WIDE_KEYS; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            // One key out of every group of five, so keys never repeat within an object
+            sb.append("\"field").append(i * 5 + random.nextInt(5)).append("\":");
+            if (random.nextBoolean()) {
+                sb.append(random.nextInt(100000));
+            } else {
+                sb.append("\"value").append(random.nextInt(1000)).append('"');
+            }
+        }
+        sb.append('}');
+    }
+
+    private static void record(StringBuilder sb, int id, Random random) {
+        sb.append("{\"id\":").append(id)
+                .append(",\"sku\":\"SKU-").append(id).append('"')
+                .append(",\"price\":").append(random.nextInt(100000) / 100.0)
+                .append(",\"inStock\":").append(random.nextBoolean())
+                .append(",\"tags\":[\"tag").append(random.nextInt(50)).append("\",\"tag").append(random.nextInt(50))
+                .append("\"],\"dimensions\":{\"width\":").append(random.nextInt(100))
+                .append(",\"height\":").append(random.nextInt(100)).append("}}");
+    }
+
+    private static void heterogeneous(StringBuilder sb, int id, Random random, int depth) {
+        switch (depth > 2 ? random.nextInt(5) : random.nextInt(8)) {
+            case 0:
+                sb.append(random.nextInt());
+                break;
+            case 1:
+                sb.append("\"text").append(random.nextInt(1000)).append("\\n\\u00e9\"");
+                break;
+            case 2:
+                sb.append("null");
+                break;
+            case 3:
+                sb.append(random.nextBoolean());
+                break;
+            case 4:
+                sb.append(random.nextDouble());
+                break;
+            case 5: {
+                sb.append('[');
+                int length = random.nextInt(6);
+                for (int i = 0; i < length; i++) {
+                    if (i > 0) {
+                        sb.append(',');
+                    }
+                    heterogeneous(sb, id, random, depth + 1);
+                }
+                sb.append(']');
+                break;
+            }
+            default: {
+                sb.append("{\"id\":").append(id);
+                for (String field : OPTIONAL_FIELDS) {
+                    if (random.nextInt(3) == 0) {
+                        sb.append(",\"").append(field).append("\":");
+                        heterogeneous(sb, id, random, depth + 1);
+                    }
+                }
+                sb.append('}');
+            }
+        }
+    }
+}
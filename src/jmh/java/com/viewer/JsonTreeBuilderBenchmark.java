@@ -0,0 +1,52 @@
+package com.viewer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.swing.tree.TreeModel;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full parse of a file into the structure tree, the work done by the tool window on every refresh.
+ * The input is memory mapped as in the plugin, so the 1 GB fixtures run with a small heap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MINUTES)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class JsonTreeBuilderBenchmark {
+
+    @Param({"DEEP", "WIDE", "LARGE_ARRAY", "HETEROGENEOUS"})
+    public JsonFixtures.Shape shape;
+
+    @Param({"1", "16", "256", "1024"})
+    public int sizeMb;
+
+    private final JsonTreeBuilder builder = new JsonTreeBuilder();
+    private Path file;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = JsonFixtures.get(shape, sizeMb);
+    }
+
+    @Benchmark
+    public TreeModel buildTreeModel() throws IOException {
+        try (JsonInput input = JsonInput.map(file)) {
+            return builder.buildTreeModel(input);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.viewer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.swing.tree.TreeModel;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link JsonTreeBuilder.NodeInfo#getPath()} for every node of the tree, as done when inserting paths into the
+ * editor and when indexing them for the filter. The schema does not grow with the file, so one size is enough.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class NodePathBenchmark {
+
+    @Param({"DEEP", "WIDE", "LARGE_ARRAY", "HETEROGENEOUS"})
+    public JsonFixtures.Shape shape;
+
+    private JsonTreeBuilder.NodeInfo[] nodes;
+
+    @Setup
+    public void setUp() throws IOException {
+        TreeModel model;
+        try (JsonInput input = JsonInput.map(JsonFixtures.get(shape, 16))) {
+            model = new JsonTreeBuilder().buildTreeModel(input);
+        }
+        List<JsonTreeBuilder.NodeInfo> collected = new ArrayList<>();
+        List<Object> pending = new ArrayList<>();
+        pending.add(model.getRoot());
+        while (!pending.isEmpty()) {
+            Object node = pending.remove(pending.size() - 1);
+            collected.add((JsonTreeBuilder.NodeInfo) node);
+            for (int i = 0; i < model.getChildCount(node); i++) {
+                pending.add(model.getChild(node, i));
+            }
+        }
+        nodes = collected.toArray(new JsonTreeBuilder.NodeInfo[0]);
+    }
+
+    @Benchmark
+    public void getPath(Blackhole blackhole) {
+        for (JsonTreeBuilder.NodeInfo node : nodes) {
+            blackhole.consume(node.getPath());
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.utils;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Writes the classes inferred by {@link JsonToGroovyGenerator} into a source directory, one file per class. A
+ * manifest next to them keeps the fingerprint of every class and of the whole schema, so an unchanged schema
+ * writes nothing and a changed one only rewrites the classes that differ. Every file is written to a temporary
+ * sibling first and moved into place, so the IDE never sees a half-written class. Writers of the same directory,
+ * in this process or another, take turns on a lock file next to the manifest.
+ * <p>
+ * Class names that differ only in case, e.g. {@code UserId} and {@code UserID}, would share a file on Windows and
+ * macOS, so they are rejected on every platform; the generated sources stay the same wherever they are checked out.
+ */
+public class GroovyModelWriter {
+
+    private static final String MANIFEST = ".groovy-model";
+    private static final String LOCK = ".groovy-model.lock";
+    private static final String SUFFIX = ".groovy";
+    // A file lock is held per process, threads of this one queue on the directory's monitor first
+    private static final ConcurrentMap<Path, Object> DIRECTORY_MONITORS = new ConcurrentHashMap<>();
+
+    private final Path directory;
+    private final String packageName;
+
+    public GroovyModelWriter(Path directory, String packageName) {
+        this.directory = directory;
+        this.packageName = packageName;
+    }
+
+    /**
+     * Brings the directory up to date with {@code classes} and returns the number of class files written or
+     * deleted, 0 if the schema matches the previous run. Only files listed in the manifest are ever deleted.
+     *
+     * @throws IOException also if two class names differ only in case, before anything is written
+     */
+    public int write(Map<String, Map<String, String>> classes) throws IOException {
+        Files.createDirectories(directory);
+        Object monitor = DIRECTORY_MONITORS.computeIfAbsent(directory.toAbsolutePath().normalize(), key -> new Object());
+        synchronized (monitor) {
+            try (FileChannel channel = FileChannel.open(directory.resolve(LOCK), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock ignored = channel.lock()) {
+                return writeLocked(classes);
+            }
+        }
+    }
+
+    private int writeLocked(Map<String, Map<String, String>> classes) throws IOException {
+        Map<String, String> fileKeys = new HashMap<>();
+        for (String className : classes.keySet()) {
+            String other = fileKeys.putIfAbsent(fileKey(className), className);
+            if (other != null) {
+                throw new IOException("Classes " + other + " and " + className
+                        + " would overwrite each other on a case-insensitive file system; rename one of the JSON keys");
+            }
+        }
+
+        Map<String, byte[]> sources = new LinkedHashMap<>();
+        Map<String, String> hashes = new LinkedHashMap<>();
+        MessageDigest schema = sha256();
+        for (Map.Entry<String, Map<String, String>> entry : classes.entrySet()) {
+            byte[] source = render(entry.getKey(), entry.getValue()).getBytes(StandardCharsets.UTF_8);
+            String hash = hex(sha256().digest(source));
+            sources.put(entry.getKey(), source);
+            hashes.put(entry.getKey(), hash);
+            schema.update((entry.getKey() + ' ' + hash + '\n').getBytes(StandardCharsets.UTF_8));
+        }
+        String fingerprint = hex(schema.digest());
+
+        Map<String, String> previous = new LinkedHashMap<>();
+        String previousFingerprint = readManifest(previous);
+        if (fingerprint.equals(previousFingerprint) && allExist(classes.keySet())) {
+            return 0;
+        }
+
+        int changed = 0;
+        for (Map.Entry<String, byte[]> entry : sources.entrySet()) {
+            Path file = classFile(entry.getKey());
+            if (!hashes.get(entry.getKey()).equals(previous.get(entry.getKey())) || !Files.isRegularFile(file)) {
+                writeAtomically(file, entry.getValue());
+                changed++;
+            }
+        }
+        for (String stale : previous.keySet()) {
+            if (classes.containsKey(stale)) {
+                continue;
+            }
+            Path file = classFile(stale);
+            String renamed = fileKeys.get(fileKey(stale));
+            // A class that only changed case was just written over this file on a case-insensitive file system
+            if (renamed != null && Files.exists(file) && Files.isSameFile(file, classFile(renamed))) {
+                continue;
+            }
+            if (Files.deleteIfExists(file)) {
+                changed++;
+            }
+        }
+
+        // The manifest goes last, an interrupted run is redone from the old one
+        StringBuilder manifest = new StringBuilder(fingerprint).append('\n');
+        for (Map.Entry<String, String> entry : hashes.entrySet()) {
+            manifest.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+        }
+        writeAtomically(directory.resolve(MANIFEST), manifest.toString().getBytes(StandardCharsets.UTF_8));
+        return changed;
+    }
+
+    private String render(String className, Map<String, String> props) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("package ").append(packageName).append("\n\n");
+        sb.append("import groovy.transform.Canonical\n\n");
+        sb.append("@Canonical\n");
+        sb.append("class ").append(className).append(" {\n");
+        for (Map.Entry<String, String> prop : props.entrySet()) {
+            sb.append("    ").append(prop.getValue()).append(" ").append(prop.getKey()).append("\n");
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    // Reads the class hashes of the previous run into hashes and returns its schema fingerprint, or null
+    private String readManifest(Map<String, String> hashes) throws IOException {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(directory.resolve(MANIFEST), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+        if (lines.isEmpty()) {
+            return null;
+        }
+        for (String line : lines.subList(1, lines.size())) {
+            int space = line.indexOf(' ');
+            if (space > 0) {
+                hashes.put(line.substring(0, space), line.substring(space + 1));
+            }
+        }
+        return lines.get(0);
+    }
+
+    private boolean allExist(Iterable<String> classNames) {
+        for (String className : classNames) {
+            if (!Files.isRegularFile(classFile(className))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Path classFile(String className) {
+        return directory.resolve(className + SUFFIX);
+    }
+
+    private static String fileKey(String className) {
+        return className.toLowerCase(Locale.ROOT);
+    }
+
+    private static void writeAtomically(Path file, byte[] content) throws IOException {
+        Path temp = Files.createTempFile(file.getParent(), file.getFileName() + ".", ".tmp");
+        try {
+            Files.write(temp, content);
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to provide SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -1,125 +1,590 @@
 package com.utils;
 
-import com.alibaba.fastjson.JSON;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.alibaba.fastjson.serializer.JSONSerializer;
+import com.alibaba.fastjson.serializer.SerializeWriter;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
+/**
+ * Generates Groovy classes for the shape of a JSON document. A generator keeps no state between calls, so one
+ * instance can be shared by any number of threads and generations never see each other's classes.
+ * <p>
+ * Types are joined on a lattice instead of taken from the first or last value seen: int widens to long and double,
+ * a null or a missing property makes a type nullable (boxed), objects at the same place merge into one class, and
+ * any other mix becomes {@code Object}. The elements of large arrays are inferred in batches on the executor while
+ * the input is still being read; batches are merged in array order, so the result does not depend on timing.
+ */
 public class JsonToGroovyGenerator {
 
-    private static final ObjectMapper mapper = new ObjectMapper();
-    private static final Map<String, LinkedHashMap<String, String>> classMap = new LinkedHashMap<>();
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    // 默认相对于工程根目录，可以用 -Dgroovy.model.input / -Dgroovy.model.output 或 main 的参数指定
+    private static final String INPUT_PROPERTY = "groovy.model.input";
+    private static final String OUTPUT_PROPERTY = "groovy.model.output";
+    private static final Path DEFAULT_INPUT = Paths.get("src", "main", "java", "com", "eric", "_context.json");
+    private static final Path DEFAULT_OUTPUT = Paths.get("src", "main", "java", "com", "eric", "groovy");
+    // Tokens of array elements collected before they go to the executor as one batch
+    private static final int BATCH_TOKENS = 1 << 14;
+
+    private final Executor executor;
+    private final int maxPendingBatches;
+    private final int tokensPerBatch;
+
+    public JsonToGroovyGenerator() {
+        this(ForkJoinPool.commonPool(), ForkJoinPool.getCommonPoolParallelism());
+    }
+
+    /**
+     * Array batches run on {@code executor}; at most twice {@code parallelism} of them wait per array, which bounds
+     * the memory held for elements read ahead.
+     */
+    public JsonToGroovyGenerator(Executor executor, int parallelism) {
+        this(executor, parallelism, BATCH_TOKENS);
+    }
+
+    // Smaller batches let tests cut small documents the way large ones are cut
+    JsonToGroovyGenerator(Executor executor, int parallelism, int tokensPerBatch) {
+        this.executor = executor;
+        this.maxPendingBatches = Math.max(1, parallelism) * 2;
+        this.tokensPerBatch = tokensPerBatch;
+    }
 
     public static void parseContextObjToClass(Object context) throws IOException {
-        Path output = Paths.get("D:\\My\\code\\demo\\netty\\src\\main\\java\\com\\eric\\groovy\\ContextRoot.groovy");
-        String jsonContent = JSON.toJSONString(context);
-        JsonNode json = mapper.readTree(jsonContent);
+        Path output = path(null, OUTPUT_PROPERTY, DEFAULT_OUTPUT);
+        writeClasses(new JsonToGroovyGenerator().inferClasses(context, "ContextRoot"), output);
+    }
+
+    /**
+     * 用法：{@code JsonToGroovyGenerator [input.json [outputDir]]}，省略的参数取系统属性，再取默认的相对路径
+     */
+    public static void main(String[] args) throws Exception {
+
+        Path input = path(args.length > 0 ? args[0] : null, INPUT_PROPERTY, DEFAULT_INPUT);
+        String rootName = sanitizeClassName("ContextRoot");
+        Path output = path(args.length > 1 ? args[1] : null, OUTPUT_PROPERTY, DEFAULT_OUTPUT);
+
+        // 流式读取，文件再大也只过一遍，内存不随文件大小增长
+        Map<String, Map<String, String>> classes;
+        try (JsonParser parser = JSON_FACTORY.createParser(input.toFile())) {
+            classes = new JsonToGroovyGenerator().inferClasses(parser, rootName);
+        }
 
-        processJsonNode(json, "ContextRoot");
+        writeClasses(classes, output);
+    }
 
-        StringBuilder sb = new StringBuilder();
-        sb.append("package com.eric.groovy\n\n");
-        sb.append("import groovy.transform.Canonical\n\n");
+    /**
+     * Infers the classes of the JSON read from {@code parser}, which must not have returned a token yet. The root
+     * object, or every object of a root array, becomes {@code rootName}. Returns the properties of each class by
+     * class name, in the order the classes were first met.
+     */
+    public Map<String, Map<String, String>> inferClasses(JsonParser parser, String rootName) throws IOException {
+        Inference inference = new Inference(true);
+        for (JsonToken token = parser.nextToken(); token != null; token = parser.nextToken()) {
+            inference.accept(token, parser);
+        }
+        return resolveClasses(inference.root, rootName);
+    }
 
-        for (Map.Entry<String, LinkedHashMap<String, String>> entry : classMap.entrySet()) {
-            String className = entry.getKey();
-            LinkedHashMap<String, String> props = entry.getValue();
-            sb.append("@Canonical\n");
-            sb.append("class ").append(className).append(" {\n");
-            for (Map.Entry<String, String> prop : props.entrySet()) {
-                sb.append("    ").append(prop.getValue()).append(" ").append(prop.getKey()).append("\n");
+    /**
+     * Same as {@link #inferClasses(JsonParser, String)} for a live object, as fastjson serializes it. The JSON is
+     * inferred while it is written; neither its text nor a tree of it is kept.
+     */
+    public Map<String, Map<String, String>> inferClasses(Object value, String rootName) throws IOException {
+        Inference inference = new Inference(true);
+        try (Writer writer = new OutputStreamWriter(new TokenFeed(inference), StandardCharsets.UTF_8)) {
+            SerializeWriter out = new SerializeWriter(writer);
+            try {
+                new JSONSerializer(out).write(value);
+            } finally {
+                out.close();
             }
-            sb.append("}\n\n");
         }
+        return resolveClasses(inference.root, rootName);
+    }
+
+    private static Path path(String argument, String property, Path defaultPath) {
+        String value = argument != null ? argument : System.getProperty(property);
+        return value != null ? Paths.get(value) : defaultPath;
+    }
 
-        // Java 8 写入文件
-        Files.write(output, sb.toString().getBytes(StandardCharsets.UTF_8));
+    private static void writeClasses(Map<String, Map<String, String>> classes, Path output) throws IOException {
+        // 每个类一个文件，结构没变就什么都不写，避免 IDE 重新索引和编译
+        int changed = new GroovyModelWriter(output, "com.eric.groovy").write(classes);
 
-        System.out.println("✅ Generated: " + output.toAbsolutePath());
+        System.out.println(changed == 0 ? "✅ Up to date: " + output.toAbsolutePath()
+                : "✅ Generated " + changed + " file(s) in " + output.toAbsolutePath());
     }
-    public static void main(String[] args) throws Exception {
 
-        Path input = Paths.get("D:\\My\\code\\demo\\netty\\src\\main\\java\\com\\eric\\_context.json");
-        String rootName = sanitizeClassName("ContextRoot");
-        Path output = Paths.get("D:\\My\\code\\demo\\netty\\src\\main\\java\\com\\eric\\groovy\\ContextRoot.groovy");
+    /**
+     * One element of the type lattice: the kinds a value was seen with, whether it was ever null or missing, and the
+     * merged properties of its objects and elements of its arrays. Shapes are never shared, {@link #join} copies.
+     */
+    private static final class Shape {
+        static final int BOOLEAN = 1;
+        static final int INT = 1 << 1;
+        static final int LONG = 1 << 2;
+        static final int BIG_INTEGER = 1 << 3;
+        static final int DOUBLE = 1 << 4;
+        static final int STRING = 1 << 5;
+        static final int OBJECT = 1 << 6;
+        static final int LIST = 1 << 7;
+        static final int OTHER = 1 << 8;
+        static final int NUMBERS = INT | LONG | BIG_INTEGER | DOUBLE;
+
+        int kinds;
+        boolean nullable;
+        LinkedHashMap<String, Shape> fields;
+        Shape element;
+
+        Shape(int kinds) {
+            this.kinds = kinds;
+            if (kinds == OBJECT) {
+                fields = new LinkedHashMap<>();
+            } else if (kinds == LIST) {
+                element = new Shape(0);
+            }
+        }
+    }
+
+    // Joins source into target without touching source. Walks both on an explicit stack, shapes can be as deep as the JSON
+    private static void join(Shape target, Shape source) {
+        Deque<Shape> pairs = new ArrayDeque<>();
+        pairs.push(source);
+        pairs.push(target);
+        while (!pairs.isEmpty()) {
+            Shape into = pairs.pop();
+            Shape from = pairs.pop();
+            if ((from.kinds & Shape.OBJECT) != 0) {
+                boolean hadObjects = (into.kinds & Shape.OBJECT) != 0;
+                if (!hadObjects) {
+                    into.fields = new LinkedHashMap<>();
+                }
+                for (Map.Entry<String, Shape> field : from.fields.entrySet()) {
+                    Shape merged = into.fields.get(field.getKey());
+                    if (merged == null) {
+                        merged = new Shape(0);
+                        // The objects joined before did not have this property
+                        merged.nullable = hadObjects;
+                        into.fields.put(field.getKey(), merged);
+                    }
+                    pairs.push(field.getValue());
+                    pairs.push(merged);
+                }
+                if (hadObjects) {
+                    for (Map.Entry<String, Shape> field : into.fields.entrySet()) {
+                        if (!from.fields.containsKey(field.getKey())) {
+                            field.getValue().nullable = true;
+                        }
+                    }
+                }
+            }
+            if ((from.kinds & Shape.LIST) != 0) {
+                if (into.element == null) {
+                    into.element = new Shape(0);
+                }
+                pairs.push(from.element);
+                pairs.push(into.element);
+            }
+            into.kinds |= from.kinds;
+            into.nullable |= from.nullable;
+        }
+    }
+
+    private static Shape scalarShape(JsonToken token, JsonParser parser) throws IOException {
+        switch (token) {
+            case VALUE_NULL: {
+                Shape shape = new Shape(0);
+                shape.nullable = true;
+                return shape;
+            }
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+                return new Shape(Shape.BOOLEAN);
+            case VALUE_NUMBER_INT:
+                switch (parser.getNumberType()) {
+                    case INT:
+                        return new Shape(Shape.INT);
+                    case LONG:
+                        return new Shape(Shape.LONG);
+                    default:
+                        return new Shape(Shape.BIG_INTEGER);
+                }
+            case VALUE_NUMBER_FLOAT:
+                return new Shape(Shape.DOUBLE);
+            case VALUE_STRING:
+                return new Shape(Shape.STRING);
+            default:
+                return new Shape(Shape.OTHER);
+        }
+    }
+
+    /**
+     * Builds the shape of the JSON from its tokens in a single pass, pushed in as a parser returns them. Only the
+     * open containers are kept, on an explicit stack. All top-level values are joined into {@link #root}.
+     * <p>
+     * With {@code batching}, the elements of an array are not built here but copied into token batches that the
+     * executor infers; arrays inside those elements are then built sequentially by the batch. An element that
+     * alone fills a batch is built here, so no single element is ever copied whole.
+     */
+    private final class Inference {
+        private final boolean batching;
+        private final Deque<Frame> stack = new ArrayDeque<>();
+        final Shape root = new Shape(0);
+
+        Inference(boolean batching) {
+            this.batching = batching;
+        }
 
-        // Java 8 读取文件
-        String jsonContent = new String(Files.readAllBytes(input), StandardCharsets.UTF_8);
+        void accept(JsonToken token, JsonParser parser) throws IOException {
+            if (stack.isEmpty()) {
+                start(token, parser, null);
+            } else {
+                stack.peek().accept(token, parser);
+            }
+        }
 
-        JsonNode json = mapper.readTree(jsonContent);
+        private void start(JsonToken token, JsonParser parser, Frame parent) throws IOException {
+            if (token == JsonToken.START_OBJECT) {
+                stack.push(new ObjectFrame(parent));
+            } else if (token == JsonToken.START_ARRAY) {
+                stack.push(batching ? new BatchedListFrame(parent) : new ListFrame(parent));
+            } else {
+                deliver(parent, scalarShape(token, parser));
+            }
+        }
 
-        processJsonNode(json, rootName);
+        private void deliver(Frame parent, Shape value) {
+            if (parent == null) {
+                join(root, value);
+            } else {
+                parent.add(value);
+            }
+        }
 
-        StringBuilder sb = new StringBuilder();
-        sb.append("package com.eric.groovy\n\n");
-        sb.append("import groovy.transform.Canonical\n\n");
+        private abstract class Frame {
+            final Frame parent;
+            final Shape shape;
 
-        for (Map.Entry<String, LinkedHashMap<String, String>> entry : classMap.entrySet()) {
-            String className = entry.getKey();
-            LinkedHashMap<String, String> props = entry.getValue();
-            sb.append("@Canonical\n");
-            sb.append("class ").append(className).append(" {\n");
-            for (Map.Entry<String, String> prop : props.entrySet()) {
-                sb.append("    ").append(prop.getValue()).append(" ").append(prop.getKey()).append("\n");
+            Frame(Frame parent, Shape shape) {
+                this.parent = parent;
+                this.shape = shape;
+            }
+
+            abstract void accept(JsonToken token, JsonParser parser) throws IOException;
+
+            abstract void add(Shape value);
+
+            void end() {
+                stack.pop();
+                deliver(parent, shape);
             }
-            sb.append("}\n\n");
         }
 
-        // Java 8 写入文件
-        Files.write(output, sb.toString().getBytes(StandardCharsets.UTF_8));
+        private final class ObjectFrame extends Frame {
+            String key;
 
-        System.out.println("✅ Generated: " + output.toAbsolutePath());
+            ObjectFrame(Frame parent) {
+                super(parent, new Shape(Shape.OBJECT));
+            }
+
+            @Override
+            void accept(JsonToken token, JsonParser parser) throws IOException {
+                if (token == JsonToken.FIELD_NAME) {
+                    key = sanitizePropName(parser.getCurrentName());
+                } else if (token == JsonToken.END_OBJECT) {
+                    end();
+                } else {
+                    start(token, parser, this);
+                }
+            }
+
+            @Override
+            void add(Shape value) {
+                Shape existing = shape.fields.putIfAbsent(key, value);
+                if (existing != null) {
+                    join(existing, value);
+                }
+            }
+        }
+
+        private final class ListFrame extends Frame {
+            ListFrame(Frame parent) {
+                super(parent, new Shape(Shape.LIST));
+            }
+
+            @Override
+            void accept(JsonToken token, JsonParser parser) throws IOException {
+                if (token == JsonToken.END_ARRAY) {
+                    end();
+                } else {
+                    start(token, parser, this);
+                }
+            }
+
+            @Override
+            void add(Shape value) {
+                join(shape.element, value);
+            }
+        }
+
+        // Collects the element tokens into batches; full batches go to the executor, the last one is inferred here
+        private final class BatchedListFrame extends Frame {
+            private final Deque<CompletableFuture<Shape>> pending = new ArrayDeque<>();
+            private TokenBuffer batch;
+            private int batchTokens;
+            private int depth;
+
+            BatchedListFrame(Frame parent) {
+                super(parent, new Shape(Shape.LIST));
+            }
+
+            @Override
+            void accept(JsonToken token, JsonParser parser) throws IOException {
+                if (depth == 0 && token == JsonToken.END_ARRAY) {
+                    Shape rest = batch != null ? inferBatch(batch) : null;
+                    // Earlier batches first, so properties keep the order they appear in
+                    while (!pending.isEmpty()) {
+                        add(await(pending.poll()));
+                    }
+                    if (rest != null) {
+                        add(rest);
+                    }
+                    end();
+                    return;
+                }
+                if (batch == null) {
+                    batch = new TokenBuffer((ObjectCodec) null, false);
+                }
+                batch.copyCurrentEvent(parser);
+                batchTokens++;
+                if (token.isStructStart()) {
+                    depth++;
+                } else if (token.isStructEnd()) {
+                    depth--;
+                }
+                if (batchTokens >= tokensPerBatch) {
+                    if (depth == 0) {
+                        submit();
+                    } else {
+                        inferInline();
+                    }
+                }
+            }
+
+            // An element too large for one batch is inferred here instead of being copied whole; arrays inside it
+            // get frames of their own and batch their elements in turn
+            private void inferInline() throws IOException {
+                TokenBuffer partial = batch;
+                batch = null;
+                batchTokens = 0;
+                depth = 0;
+                // Earlier batches first, so properties keep the order they appear in
+                while (!pending.isEmpty()) {
+                    add(await(pending.poll()));
+                }
+                try (JsonParser replay = partial.asParser()) {
+                    for (JsonToken token = replay.nextToken(); token != null; token = replay.nextToken()) {
+                        Frame top = stack.peek();
+                        if (top == this) {
+                            start(token, replay, this);
+                        } else {
+                            top.accept(token, replay);
+                        }
+                    }
+                }
+            }
+
+            private void submit() throws IOException {
+                TokenBuffer full = batch;
+                batch = null;
+                batchTokens = 0;
+                if (pending.size() >= maxPendingBatches) {
+                    add(await(pending.poll()));
+                }
+                pending.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return inferBatch(full);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, executor));
+            }
+
+            @Override
+            void add(Shape value) {
+                join(shape.element, value);
+            }
+        }
     }
 
-    private static void processJsonNode(JsonNode node, String className) {
-        if (node.isObject()) {
-            LinkedHashMap<String, String> props = classMap.computeIfAbsent(className, k -> new LinkedHashMap<>());
-            node.fields().forEachRemaining(entry -> {
-                String key = sanitizePropName(entry.getKey());
-                JsonNode value = entry.getValue();
-                String type = inferType(value, capitalize(key));
-                props.put(key, type);
-            });
-        } else if (node.isArray()) {
-            for (JsonNode child : node) {
-                processJsonNode(child, className);
+    // Joins the shapes of all elements in a batch
+    private Shape inferBatch(TokenBuffer batch) throws IOException {
+        Inference inference = new Inference(false);
+        try (JsonParser parser = batch.asParser()) {
+            for (JsonToken token = parser.nextToken(); token != null; token = parser.nextToken()) {
+                inference.accept(token, parser);
             }
         }
+        return inference.root;
     }
 
-    private static String inferType(JsonNode node, String classHint) {
-        if (node.isNull()) return "Object";
-        if (node.isBoolean()) return "boolean";
-        if (node.isInt()) return "int";
-        if (node.isLong()) return "long";
-        if (node.isDouble() || node.isFloat() || node.isBigDecimal()) return "double";
-        if (node.isTextual()) return "String";
+    private static Shape await(CompletableFuture<Shape> batch) throws IOException {
+        try {
+            return batch.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw e;
+        }
+    }
 
-        if (node.isArray()) {
-            if (!node.elements().hasNext()) return "List<Object>";
-            JsonNode first = null;
-            for (JsonNode item : node) {
-                if (!item.isNull()) { first = item; break; }
+    /**
+     * Turns the shape of the whole document into classes. Objects are named after the property holding them, a
+     * property holding arrays of objects after its singular; objects with the same name merge into one class.
+     */
+    private static Map<String, Map<String, String>> resolveClasses(Shape root, String rootName) {
+        // First merge every object shape into the class of its name, in the order a depth-first walk meets them
+        Map<String, Shape> merged = new LinkedHashMap<>();
+        Deque<Shape> shapes = new ArrayDeque<>();
+        Deque<String> names = new ArrayDeque<>();
+        // The root class is asked for by name, so it comes from the root objects even if other values are mixed in
+        Shape rootObject = root;
+        while ((rootObject.kinds & (Shape.OBJECT | Shape.LIST)) == Shape.LIST) {
+            rootObject = rootObject.element;
+        }
+        if ((rootObject.kinds & Shape.OBJECT) != 0) {
+            shapes.push(rootObject);
+            names.push(rootName);
+        }
+        while (!shapes.isEmpty()) {
+            Shape shape = shapes.pop();
+            join(merged.computeIfAbsent(names.pop(), name -> new Shape(0)), shape);
+            List<Map.Entry<String, Shape>> fields = new ArrayList<>(shape.fields.entrySet());
+            for (int i = fields.size() - 1; i >= 0; i--) {
+                Shape nested = fields.get(i).getValue();
+                String hint = capitalize(fields.get(i).getKey());
+                while (nested.kinds == Shape.LIST) {
+                    nested = nested.element;
+                    hint = singularize(hint);
+                }
+                if (nested.kinds == Shape.OBJECT) {
+                    shapes.push(nested);
+                    names.push(sanitizeClassName(hint));
+                }
             }
-            if (first == null) return "List<Object>";
-            String elementType = inferType(first, singularize(classHint));
-            return "List<" + elementType + ">";
         }
 
-        if (node.isObject()) {
-            String nestedClass = sanitizeClassName(classHint);
-            processJsonNode(node, nestedClass);
-            return nestedClass;
+        Map<String, Map<String, String>> classes = new LinkedHashMap<>();
+        for (Map.Entry<String, Shape> entry : merged.entrySet()) {
+            Map<String, String> props = new LinkedHashMap<>();
+            for (Map.Entry<String, Shape> field : entry.getValue().fields.entrySet()) {
+                props.put(field.getKey(), typeName(field.getValue(), capitalize(field.getKey())));
+            }
+            classes.put(entry.getKey(), props);
         }
+        return classes;
+    }
+
+    private static String typeName(Shape shape, String hint) {
+        int lists = 0;
+        while (shape.kinds == Shape.LIST) {
+            shape = shape.element;
+            hint = singularize(hint);
+            lists++;
+        }
+        // Type arguments can't be primitive
+        String type = baseType(shape, sanitizeClassName(hint), shape.nullable || lists > 0);
+        for (int i = 0; i < lists; i++) {
+            type = "List<" + type + ">";
+        }
+        return type;
+    }
 
-        return "Object";
+    private static String baseType(Shape shape, String className, boolean boxed) {
+        switch (shape.kinds) {
+            case Shape.BOOLEAN:
+                return boxed ? "Boolean" : "boolean";
+            case Shape.STRING:
+                return "String";
+            case Shape.OBJECT:
+                return className;
+        }
+        if (shape.kinds == 0 || (shape.kinds & ~Shape.NUMBERS) != 0) {
+            return "Object";
+        }
+        if ((shape.kinds & Shape.DOUBLE) != 0) {
+            return (shape.kinds & Shape.BIG_INTEGER) != 0 ? "BigDecimal" : boxed ? "Double" : "double";
+        }
+        if ((shape.kinds & Shape.BIG_INTEGER) != 0) {
+            return "BigInteger";
+        }
+        if ((shape.kinds & Shape.LONG) != 0) {
+            return boxed ? "Long" : "long";
+        }
+        return boxed ? "Integer" : "int";
+    }
+
+    /**
+     * Feeds the bytes written to it into a non-blocking parser and passes every token on as soon as it is complete.
+     */
+    private static final class TokenFeed extends OutputStream {
+        private final JsonParser parser;
+        private final ByteArrayFeeder feeder;
+        private final Inference inference;
+
+        TokenFeed(Inference inference) throws IOException {
+            this.parser = JSON_FACTORY.createNonBlockingByteArrayParser();
+            this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+            this.inference = inference;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            // The parser reads straight from b, which the caller may reuse once it has been drained
+            feeder.feedInput(b, off, off + len);
+            drain();
+        }
+
+        @Override
+        public void close() throws IOException {
+            feeder.endOfInput();
+            drain();
+            parser.close();
+        }
+
+        private void drain() throws IOException {
+            for (JsonToken token = parser.nextToken(); token != null && token != JsonToken.NOT_AVAILABLE; token = parser.nextToken()) {
+                inference.accept(token, parser);
+            }
+        }
     }
 
     private static String sanitizeClassName(String name) {
@@ -0,0 +1,96 @@
+package com.viewer;
+
+import com.intellij.codeInsight.completion.CompletionContributor;
+import com.intellij.codeInsight.completion.CompletionParameters;
+import com.intellij.codeInsight.completion.CompletionProvider;
+import com.intellij.codeInsight.completion.CompletionResultSet;
+import com.intellij.codeInsight.completion.CompletionType;
+import com.intellij.codeInsight.lookup.LookupElementBuilder;
+import com.intellij.icons.AllIcons;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.patterns.PlatformPatterns;
+import com.intellij.util.ProcessingContext;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.plugins.groovy.lang.psi.api.statements.expressions.GrExpression;
+import org.jetbrains.plugins.groovy.lang.psi.api.statements.expressions.GrReferenceExpression;
+import org.jetbrains.plugins.groovy.lang.psi.api.statements.expressions.path.GrIndexProperty;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Completes {@code _context.a.b.} in Groovy scripts from the {@link ContextSchemaIndex}, i.e. straight from the
+ * JSON file the viewer parsed. Index access and safe navigation are followed, so {@code _context.orders[0].}
+ * offers the keys of the order objects. Nothing here needs the indexes, so it also works while the IDE indexes.
+ */
+public class ContextCompletionContributor extends CompletionContributor implements DumbAware {
+
+    private static final String CONTEXT_VARIABLE = "_context";
+
+    public ContextCompletionContributor() {
+        extend(CompletionType.BASIC, PlatformPatterns.psiElement().withParent(GrReferenceExpression.class),
+                new CompletionProvider<CompletionParameters>() {
+                    @Override
+                    protected void addCompletions(@NotNull CompletionParameters parameters,
+                                                  @NotNull ProcessingContext context,
+                                                  @NotNull CompletionResultSet result) {
+                        GrReferenceExpression reference = (GrReferenceExpression) parameters.getPosition().getParent();
+                        List<String> path = contextPath(reference.getQualifierExpression());
+                        if (path == null) {
+                            return;
+                        }
+                        ContextSchemaIndex.Node node = ContextSchemaIndex.getInstance(reference.getProject()).find(path);
+                        if (node == null) {
+                            return;
+                        }
+                        for (Map.Entry<String, ContextSchemaIndex.Node> property : node.getChildren().entrySet()) {
+                            result.addElement(LookupElementBuilder.create(propertyReference(property.getKey()))
+                                    .withTypeText(property.getValue().getTypeName())
+                                    .withIcon(AllIcons.Nodes.Property));
+                        }
+                    }
+                });
+    }
+
+    // The keys between _context and the completed reference, outermost first, or null if the chain does not start at _context
+    private static List<String> contextPath(GrExpression qualifier) {
+        List<String> path = new ArrayList<>();
+        GrExpression expression = qualifier;
+        while (expression != null) {
+            if (expression instanceof GrIndexProperty) {
+                // Array items are transparent in the index
+                expression = ((GrIndexProperty) expression).getInvokedExpression();
+                continue;
+            }
+            if (!(expression instanceof GrReferenceExpression)) {
+                return null;
+            }
+            GrReferenceExpression reference = (GrReferenceExpression) expression;
+            String name = reference.getReferenceName();
+            if (name == null) {
+                return null;
+            }
+            expression = reference.getQualifierExpression();
+            if (expression == null) {
+                if (!CONTEXT_VARIABLE.equals(name)) {
+                    return null;
+                }
+                Collections.reverse(path);
+                return path;
+            }
+            path.add(name);
+        }
+        return null;
+    }
+
+    // Keys that are not identifiers, e.g. "order-id", have to be written as quoted property names
+    private static String propertyReference(String key) {
+        boolean identifier = !key.isEmpty() && Character.isJavaIdentifierStart(key.charAt(0));
+        for (int i = 1; identifier && i < key.length(); i++) {
+            identifier = Character.isJavaIdentifierPart(key.charAt(i));
+        }
+        return identifier ? key : "'" + key.replace("\\", "\\\\").replace("'", "\\'") + "'";
+    }
+}
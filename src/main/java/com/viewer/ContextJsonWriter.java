@@ -0,0 +1,139 @@
+package com.viewer;
+
+import com.google.gson.stream.JsonWriter;
+import com.sun.jdi.ObjectReference;
+import com.sun.jdi.StringReference;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * Writes a captured context as indented JSON while it is being walked, in the format {@code DebugUtil.dump} writes:
+ * plain values, objects and arrays, with placeholder strings such as {@code "<<CIRCULAR_REFERENCE_TO_ID:n>>"} where
+ * the walk cut a cycle and {@code "<<NOT_LOADED>>"} for parts that were not read. Write failures are rethrown as
+ * {@link UncheckedIOException}.
+ */
+public class ContextJsonWriter implements ContextVisitor, Closeable {
+
+    private final JsonWriter writer;
+
+    public ContextJsonWriter(Writer out) {
+        writer = new JsonWriter(out);
+        writer.setIndent("  ");
+    }
+
+    @Override
+    public void beginObject(long id) {
+        try {
+            writer.beginObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void endObject() {
+        try {
+            writer.endObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void beginArray(long id) {
+        try {
+            writer.beginArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void endArray() {
+        try {
+            writer.endArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void name(String name) {
+        try {
+            writer.name(name);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void value(String value) {
+        try {
+            writer.value(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void partialValue(StringReference string, String prefix, int length) {
+        value(prefix);
+    }
+
+    @Override
+    public void number(String literal) {
+        try {
+            if (literal.equals("NaN") || literal.endsWith("Infinity")) {
+                // Not valid JSON numbers, quoted like ContextSerializer does
+                writer.value(literal);
+            } else {
+                writer.jsonValue(literal);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void value(boolean value) {
+        try {
+            writer.value(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void nullValue() {
+        try {
+            writer.nullValue();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void reference(long id, String label) {
+        // Exports convert repeated objects again, only a walk that links repeats gets here and its label is all there is
+        value(label);
+    }
+
+    @Override
+    public void deferred(ObjectReference object) {
+        // Exports have no depth limit, only a limited walk gets here
+        value("<<NOT_LOADED>>");
+    }
+
+    @Override
+    public void truncated(ContextValueParser.Page rest) {
+        // Nothing can follow the last element of an object without a name; the export just ends where the page did
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,26 @@
+package com.viewer;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+
+/**
+ * A repeated reference in the context tree. An object reachable from several places is converted once per capture;
+ * every further occurrence is this node, which points at the node showing the object.
+ */
+public class ContextReferenceNode extends DefaultMutableTreeNode {
+
+    private final ContextValueParser.Capture capture;
+    private final long targetId;
+
+    ContextReferenceNode(ContextValueParser.Capture capture, long targetId, String label) {
+        super(label);
+        this.capture = capture;
+        this.targetId = targetId;
+    }
+
+    /**
+     * Returns the node showing the referenced object, or null if it is no longer part of the tree.
+     */
+    public DefaultMutableTreeNode getTarget() {
+        return capture.nodesById.get(targetId);
+    }
+}
@@ -0,0 +1,78 @@
+package com.viewer;
+
+import com.intellij.openapi.project.Project;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The property paths of the JSON shown in the JSON Structure Viewer, kept as a trie for {@code _context}
+ * completion in Groovy scripts. The viewer replaces the trie after every parse, so keys can be completed as soon
+ * as the file has been read again, without generating or indexing any Groovy source. Array items are transparent
+ * like in {@link JsonNodeStore#getPath}: the keys of {@code orders[]} are found below {@code orders}.
+ */
+public class ContextSchemaIndex {
+
+    private volatile Node root = new Node();
+
+    public static ContextSchemaIndex getInstance(Project project) {
+        return project.getService(ContextSchemaIndex.class);
+    }
+
+    /**
+     * Replaces the trie with the paths of {@code store}. Walks every node once, so call it off the EDT.
+     */
+    public void update(JsonNodeStore store) {
+        // Parents always have lower ids, so each node's trie node exists by the time its children come
+        Node[] nodes = new Node[store.size()];
+        Node newRoot = new Node();
+        for (int id = 0; id < store.size(); id++) {
+            int parent = store.getParent(id);
+            if (parent < 0) {
+                nodes[id] = newRoot;
+            } else if (store.isArrayItem(id)) {
+                nodes[id] = nodes[parent];
+            } else {
+                Node node = nodes[parent].children.computeIfAbsent(store.getKey(id), key -> new Node());
+                node.types |= store.getType(id);
+                nodes[id] = node;
+            }
+        }
+        root = newRoot;
+    }
+
+    /**
+     * Returns the node reached by following {@code path} from the root, or null if the JSON has no such path.
+     */
+    public Node find(List<String> path) {
+        Node node = root;
+        for (String key : path) {
+            node = node.children.get(key);
+            if (node == null) {
+                return null;
+            }
+        }
+        return node;
+    }
+
+    /**
+     * One property path. Never changes once the trie is published.
+     */
+    public static final class Node {
+        private final Map<String, Node> children = new LinkedHashMap<>();
+        private byte types;
+
+        /**
+         * The properties below this one, in the order they first appear in the file.
+         */
+        public Map<String, Node> getChildren() {
+            return Collections.unmodifiableMap(children);
+        }
+
+        public String getTypeName() {
+            return JsonNodeStore.typeName(types);
+        }
+    }
+}
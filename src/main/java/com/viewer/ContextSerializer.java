@@ -0,0 +1,233 @@
+package com.viewer;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs inside the debugged VM, never in the IDE. {@link ContextValueParser} defines this class in the class loader
+ * of the paused script and calls {@link #serialize} once, so the whole {@code _context} graph comes back as one
+ * JSON string instead of a JDWP round trip per element.
+ * <p>
+ * Replayed into a {@link ContextVisitor}, the output gives the same events as walking the context over JDI with
+ * {@code ContextValueParser.walkValue}, including the cut-off strings and primitive array previews. The class may
+ * only use the JDK and must stay a single class without lambdas or nested classes, since only this class file is
+ * injected.
+ * <p>
+ * Objects and arrays are numbered in the order their brackets are written. A repeated or circular reference is
+ * written as a string of {@link #MARKER}, {@link #REFERENCE} or {@link #CIRCULAR} and that number, so the reader
+ * can link it to the container by counting brackets; a real string starting with the marker gets it doubled.
+ */
+public final class ContextSerializer {
+
+    static final char MARKER = '\0';
+    static final char REFERENCE = 'r';
+    static final char CIRCULAR = 'c';
+
+    private final int stringLimit;
+    private final int arrayPreview;
+    private int nextId; // Number of the next object or array written
+
+    private ContextSerializer(int stringLimit, int arrayPreview) {
+        this.stringLimit = stringLimit;
+        this.arrayPreview = arrayPreview;
+    }
+
+    /**
+     * Strings longer than {@code stringLimit} characters are cut off, primitive arrays are written as a preview of
+     * their first {@code arrayPreview} elements; 0 turns either off.
+     */
+    public static String serialize(Object value, int stringLimit, int arrayPreview) {
+        StringBuilder sb = new StringBuilder(1 << 12);
+        new ContextSerializer(stringLimit, arrayPreview)
+                .write(sb, value, new IdentityHashMap<Object, Integer>(), new IdentityHashMap<Object, Integer>());
+        return sb.toString();
+    }
+
+    // path holds the numbers of the objects still being written, done those of the ones written completely
+    private void write(StringBuilder sb, Object value, IdentityHashMap<Object, Integer> path, IdentityHashMap<Object, Integer> done) {
+        if (value == null) {
+            sb.append("null");
+            return;
+        }
+        if (value instanceof String) {
+            String s = (String) value;
+            if (stringLimit > 0 && s.length() > stringLimit) {
+                int end = Character.isHighSurrogate(s.charAt(stringLimit - 1)) ? stringLimit - 1 : stringLimit;
+                string(sb, s.substring(0, end) + "... (" + s.length() + " chars)");
+            } else {
+                string(sb, s);
+            }
+            return;
+        }
+        if (value instanceof Character) {
+            string(sb, value.toString());
+            return;
+        }
+        if (arrayPreview > 0 && value.getClass().isArray() && value.getClass().getComponentType().isPrimitive()) {
+            string(sb, preview(value));
+            return;
+        }
+        if (value instanceof Boolean || value instanceof Integer || value instanceof Long
+                || value instanceof Short || value instanceof Byte) {
+            sb.append(value);
+            return;
+        }
+        if (value instanceof Float || value instanceof Double) {
+            double d = ((Number) value).doubleValue();
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                quote(sb, value.toString());
+            } else {
+                sb.append(value);
+            }
+            return;
+        }
+        if (path.containsKey(value)) {
+            quote(sb, String.valueOf(MARKER) + CIRCULAR + path.get(value));
+            return;
+        }
+        if (done.containsKey(value)) {
+            quote(sb, String.valueOf(MARKER) + REFERENCE + done.get(value));
+            return;
+        }
+        // The number the object gets if it is written as an object or array
+        Integer id = nextId;
+        path.put(value, id);
+        try {
+            if (value instanceof Collection) {
+                open(sb, '[');
+                boolean first = true;
+                for (Object element : (Collection<?>) value) {
+                    if (!first) {
+                        sb.append(',');
+                    }
+                    first = false;
+                    write(sb, element, path, done);
+                }
+                sb.append(']');
+            } else if (value instanceof Map) {
+                open(sb, '{');
+                boolean first = true;
+                for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                    if (!first) {
+                        sb.append(',');
+                    }
+                    first = false;
+                    quote(sb, String.valueOf(entry.getKey()));
+                    sb.append(':');
+                    write(sb, entry.getValue(), path, done);
+                }
+                sb.append('}');
+            } else if (value.getClass().isArray()) {
+                open(sb, '[');
+                int length = Array.getLength(value);
+                for (int i = 0; i < length; i++) {
+                    if (i > 0) {
+                        sb.append(',');
+                    }
+                    write(sb, Array.get(value, i), path, done);
+                }
+                sb.append(']');
+            } else if (!writeFields(sb, value, path, done)) {
+                // Written as a string, there is nothing to link to
+                return;
+            }
+            done.put(value, id);
+        } finally {
+            path.remove(value);
+        }
+    }
+
+    // Returns false if the object could not be read and was written as a string instead
+    private boolean writeFields(StringBuilder sb, Object value, IdentityHashMap<Object, Integer> path, IdentityHashMap<Object, Integer> done) {
+        // Declared fields first, then the inherited ones, in the order JDI's allFields() uses
+        List<Field> fields = new ArrayList<Field>();
+        for (Class<?> type = value.getClass(); type != null; type = type.getSuperclass()) {
+            for (Field field : type.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers())) {
+                    continue;
+                }
+                try {
+                    field.setAccessible(true);
+                } catch (RuntimeException e) {
+                    // Encapsulated JDK internals can't be read reflectively, show them the way they print
+                    string(sb, String.valueOf(value));
+                    return false;
+                }
+                fields.add(field);
+            }
+        }
+        open(sb, '{');
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            Field field = fields.get(i);
+            quote(sb, field.getName());
+            sb.append(':');
+            Object fieldValue;
+            try {
+                fieldValue = field.get(value);
+            } catch (IllegalAccessException e) {
+                fieldValue = null;
+            }
+            write(sb, fieldValue, path, done);
+        }
+        sb.append('}');
+        return true;
+    }
+
+    private void open(StringBuilder sb, char bracket) {
+        sb.append(bracket);
+        nextId++;
+    }
+
+    // Same form as ContextValueParser.primitiveArrayPreview, e.g. byte[1048576] [0x50, 0x4b, 0x03, ...]
+    private String preview(Object array) {
+        int length = Array.getLength(array);
+        int count = Math.min(length, arrayPreview);
+        StringBuilder sb = new StringBuilder(array.getClass().getComponentType().getName())
+                .append('[').append(length).append("] [");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            Object element = Array.get(array, i);
+            if (element instanceof Byte) {
+                int b = ((Byte) element).intValue() & 0xFF;
+                sb.append("0x").append(Character.forDigit(b >> 4, 16)).append(Character.forDigit(b & 0xF, 16));
+            } else {
+                sb.append(element);
+            }
+        }
+        if (length > count) {
+            sb.append(count == 0 ? "..." : ", ...");
+        }
+        return sb.append(']').toString();
+    }
+
+    // A string value; one that starts like a reference gets the marker doubled
+    private static void string(StringBuilder sb, String s) {
+        quote(sb, !s.isEmpty() && s.charAt(0) == MARKER ? MARKER + s : s);
+    }
+
+    private static void quote(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append("\\u00").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+            } else {
+                sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+}
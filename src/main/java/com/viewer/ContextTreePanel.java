@@ -1,36 +1,265 @@
 package com.viewer;
 
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.command.WriteCommandAction;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.fileChooser.FileChooserFactory;
+import com.intellij.openapi.fileChooser.FileSaverDescriptor;
 import com.intellij.openapi.fileEditor.FileEditorManager;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.EmptyRunnable;
+import com.intellij.openapi.vcs.FileStatus;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileWrapper;
+import com.intellij.util.Alarm;
+import com.intellij.xdebugger.XDebugProcess;
+import com.intellij.xdebugger.XDebugSession;
+import com.intellij.xdebugger.XDebugSessionListener;
+import com.intellij.xdebugger.XDebuggerManager;
+import com.intellij.xdebugger.XDebuggerManagerListener;
+import org.jetbrains.annotations.NotNull;
 
 import javax.swing.*;
+import javax.swing.event.TreeExpansionEvent;
+import javax.swing.event.TreeWillExpandListener;
 import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeCellRenderer;
 import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreePath;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
 
 public class ContextTreePanel {
+    private static final int AUTO_CAPTURE_DELAY_MS = 300;
+
     private final JPanel mainPanel;
     private final JTree tree;
     private final Project project;
+    private final JButton refreshButton = new JButton("Refresh Context");
+    private final JButton exportButton = new JButton("Export JSON...");
+    private final Alarm captureAlarm;
+    private boolean expandingProgrammatically;
+    private boolean capturing;
+    private boolean captureAgain; // The debugger paused again while a capture was running
+    private final Set<PendingContextNode> loading = new HashSet<>();
+    // Nodes that differ from the capture made at the previous stop
+    private final Set<DefaultMutableTreeNode> changed = new HashSet<>();
 
-    public ContextTreePanel(Project project) {
+    public ContextTreePanel(Project project, Disposable parent) {
         this.project = project;
         this.mainPanel = new JPanel(new BorderLayout());
         this.tree = new JTree(new DefaultMutableTreeNode("context"));
         this.mainPanel.add(new JScrollPane(tree), BorderLayout.CENTER);
-        JButton refreshButton = new JButton("Refresh Context");
-        refreshButton.addActionListener(e -> {
-            DefaultMutableTreeNode root = ContextValueParser.parseContext(project);
-            tree.setModel(new DefaultTreeModel(root));
-            expandToLevel(tree, 3);
+        refreshButton.addActionListener(e -> capture(null, false));
+        exportButton.addActionListener(e -> {
+            VirtualFileWrapper target = FileChooserFactory.getInstance()
+                    .createSaveFileDialog(new FileSaverDescriptor("Export _context", "Save the whole context as JSON", "json"), project)
+                    .save((VirtualFile) null, "_context.json");
+            if (target != null) {
+                capture(target.getFile().toPath(), false);
+            }
         });
-        mainPanel.add(refreshButton, BorderLayout.NORTH);
+        JPanel buttons = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        buttons.add(refreshButton);
+        buttons.add(exportButton);
+        mainPanel.add(buttons, BorderLayout.NORTH);
+        tree.setCellRenderer(new DefaultTreeCellRenderer() {
+            @Override
+            public Component getTreeCellRendererComponent(JTree tree, Object value, boolean selected, boolean expanded,
+                                                          boolean leaf, int row, boolean hasFocus) {
+                super.getTreeCellRendererComponent(tree, value, selected, expanded, leaf, row, hasFocus);
+                if (!selected && changed.contains(value)) {
+                    setForeground(FileStatus.MODIFIED.getColor());
+                }
+                return this;
+            }
+        });
+        captureAlarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, parent);
         setupListeners();
+        watchDebugSessions(parent);
+    }
+
+    // Captures again after every stop of the debugger; stepping fast only leads to one capture, after the last stop
+    private void watchDebugSessions(Disposable parent) {
+        XDebugSessionListener pauseListener = new XDebugSessionListener() {
+            @Override
+            public void sessionPaused() {
+                captureAlarm.cancelAllRequests();
+                captureAlarm.addRequest(ContextTreePanel.this::autoCapture, AUTO_CAPTURE_DELAY_MS);
+            }
+
+            @Override
+            public void sessionResumed() {
+                captureAlarm.cancelAllRequests();
+            }
+        };
+        XDebuggerManager debuggerManager = XDebuggerManager.getInstance(project);
+        for (XDebugSession session : debuggerManager.getDebugSessions()) {
+            session.addSessionListener(pauseListener);
+        }
+        project.getMessageBus().connect(parent).subscribe(XDebuggerManager.TOPIC, new XDebuggerManagerListener() {
+            @Override
+            public void processStarted(@NotNull XDebugProcess debugProcess) {
+                debugProcess.getSession().addSessionListener(pauseListener);
+            }
+        });
+        Disposer.register(parent, () -> {
+            for (XDebugSession session : debuggerManager.getDebugSessions()) {
+                session.removeSessionListener(pauseListener);
+            }
+        });
+    }
+
+    private void autoCapture() {
+        if (!JsonViewerSettingsState.getInstance().contextAutoCapture || !mainPanel.isShowing()) return;
+        if (capturing) {
+            captureAgain = true;
+            return;
+        }
+        capture(null, true);
+    }
+
+    // Captures the context into the tree, or into exportFile instead unless it is null
+    private void capture(Path exportFile, boolean automatic) {
+        capturing = true;
+        refreshButton.setEnabled(false);
+        exportButton.setEnabled(false);
+        ContextValueParser.parseContext(project, exportFile, root -> {
+            capturing = false;
+            refreshButton.setEnabled(true);
+            exportButton.setEnabled(true);
+            if (exportFile != null) {
+                // An export builds no tree, the one on screen stays
+                Messages.showInfoMessage(mainPanel, String.valueOf(root.getUserObject()), "Export _context");
+            } else if (!automatic || isCapture(root)) {
+                // A failed automatic capture, mostly because the debuggee went on meanwhile, keeps the last stop on screen
+                show(root);
+            }
+            if (captureAgain) {
+                captureAgain = false;
+                autoCapture();
+            }
+        });
+    }
+
+    private void show(DefaultMutableTreeNode root) {
+        DefaultMutableTreeNode previous = (DefaultMutableTreeNode) tree.getModel().getRoot();
+        Set<DefaultMutableTreeNode> expanded = new HashSet<>();
+        Enumeration<TreePath> expandedPaths = tree.getExpandedDescendants(new TreePath(previous));
+        while (expandedPaths != null && expandedPaths.hasMoreElements()) {
+            expanded.add((DefaultMutableTreeNode) expandedPaths.nextElement().getLastPathComponent());
+        }
+        changed.clear();
+        tree.setModel(new DefaultTreeModel(root));
+        if (isCapture(previous) && isCapture(root)) {
+            carryOver(previous, root, expanded);
+            return;
+        }
+        // The initial expansion only shows what was captured, placeholders stay until the user opens them
+        expandingProgrammatically = true;
+        try {
+            expandToLevel(tree, 3);
+        } finally {
+            expandingProgrammatically = false;
+        }
+    }
+
+    private static boolean isCapture(DefaultMutableTreeNode root) {
+        return "_context".equals(root.getUserObject());
+    }
+
+    /**
+     * Carries the view of the previous capture over to a new one. Nodes of both trees are paired by position and
+     * label; new nodes without an equal counterpart are marked as changed, the others are expanded if their
+     * counterpart was. Objects the user had opened are loaded again, and compared once they are there.
+     */
+    private void carryOver(DefaultMutableTreeNode oldRoot, DefaultMutableTreeNode newRoot, Set<DefaultMutableTreeNode> expanded) {
+        Deque<DefaultMutableTreeNode[]> pairs = new ArrayDeque<>();
+        pairs.push(new DefaultMutableTreeNode[]{oldRoot, newRoot});
+        while (!pairs.isEmpty()) {
+            DefaultMutableTreeNode[] pair = pairs.pop();
+            DefaultMutableTreeNode old = pair[0];
+            DefaultMutableTreeNode fresh = pair[1];
+            // Refreshed again while an object was reloading
+            if (fresh.getRoot() != tree.getModel().getRoot()) return;
+            if (expanded.remove(old)) {
+                if (hasDeferredChildren(fresh)) {
+                    loadDeferredChildren(fresh, () -> {
+                        expand(fresh);
+                        carryOver(old, fresh, expanded);
+                    });
+                    continue;
+                }
+                expand(fresh);
+            }
+            for (int i = 0; i < fresh.getChildCount(); i++) {
+                DefaultMutableTreeNode freshChild = (DefaultMutableTreeNode) fresh.getChildAt(i);
+                DefaultMutableTreeNode oldChild = i < old.getChildCount() ? (DefaultMutableTreeNode) old.getChildAt(i) : null;
+                if (oldChild != null && oldChild.getClass() == freshChild.getClass()
+                        && Objects.equals(oldChild.getUserObject(), freshChild.getUserObject())) {
+                    pairs.push(new DefaultMutableTreeNode[]{oldChild, freshChild});
+                } else if (!(freshChild instanceof PendingContextNode) || ((PendingContextNode) freshChild).isPartialString()) {
+                    changed.add(freshChild);
+                }
+            }
+        }
+        tree.repaint();
+    }
+
+    private void expand(DefaultMutableTreeNode node) {
+        expandingProgrammatically = true;
+        try {
+            tree.expandPath(new TreePath(node.getPath()));
+        } finally {
+            expandingProgrammatically = false;
+        }
+    }
+
+    private static boolean hasDeferredChildren(DefaultMutableTreeNode node) {
+        for (int i = 0; i < node.getChildCount(); i++) {
+            if (node.getChildAt(i) instanceof PendingContextNode && ((PendingContextNode) node.getChildAt(i)).isDeferred()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Replaces the placeholders of objects below the depth limit by the objects, then runs onLoaded
+    private void loadDeferredChildren(DefaultMutableTreeNode node, Runnable onLoaded) {
+        List<PendingContextNode> deferred = new ArrayList<>();
+        // Backwards, so replacing a placeholder does not shift the ones still to do
+        for (int i = node.getChildCount() - 1; i >= 0; i--) {
+            if (node.getChildAt(i) instanceof PendingContextNode && ((PendingContextNode) node.getChildAt(i)).isDeferred()) {
+                deferred.add((PendingContextNode) node.getChildAt(i));
+            }
+        }
+        int[] remaining = {deferred.size()};
+        Runnable countDown = () -> {
+            if (--remaining[0] == 0) {
+                onLoaded.run();
+            }
+        };
+        if (deferred.isEmpty()) {
+            onLoaded.run();
+        }
+        for (PendingContextNode pending : deferred) {
+            if (!replacePending(pending, countDown)) {
+                countDown.run();
+            }
+        }
     }
 
     private void expandToLevel(JTree tree, int level) {
@@ -51,11 +280,37 @@ public class ContextTreePanel {
     }
 
     private void setupListeners() {
+        tree.addTreeWillExpandListener(new TreeWillExpandListener() {
+            @Override
+            public void treeWillExpand(TreeExpansionEvent event) {
+                if (expandingProgrammatically) return;
+                loadDeferredChildren((DefaultMutableTreeNode) event.getPath().getLastPathComponent(), EmptyRunnable.getInstance());
+            }
+
+            @Override
+            public void treeWillCollapse(TreeExpansionEvent event) {
+            }
+        });
         tree.addMouseListener(new MouseAdapter() {
             @Override
             public void mouseClicked(MouseEvent e) {
                 if (e.getClickCount() == 2) {
-                    Object[] pathNodes = tree.getSelectionPath().getPath();
+                    TreePath selectionPath = tree.getSelectionPath();
+                    if (selectionPath == null) return;
+                    if (selectionPath.getLastPathComponent() instanceof PendingContextNode) {
+                        replacePending((PendingContextNode) selectionPath.getLastPathComponent(), EmptyRunnable.getInstance());
+                        return;
+                    }
+                    if (selectionPath.getLastPathComponent() instanceof ContextReferenceNode) {
+                        DefaultMutableTreeNode target = ((ContextReferenceNode) selectionPath.getLastPathComponent()).getTarget();
+                        if (target != null && target.getRoot() == tree.getModel().getRoot()) {
+                            TreePath targetPath = new TreePath(target.getPath());
+                            tree.setSelectionPath(targetPath);
+                            tree.scrollPathToVisible(targetPath);
+                        }
+                        return;
+                    }
+                    Object[] pathNodes = selectionPath.getPath();
                     StringBuilder sb = new StringBuilder();
                     for (int i = 0; i < pathNodes.length; i++) {
                         if (i > 0) sb.append(".");
@@ -67,6 +322,26 @@ public class ContextTreePanel {
         });
     }
 
+    // Loads the placeholder and puts what it stands for in its place, then runs onLoaded; false if it is already loading
+    private boolean replacePending(PendingContextNode pending, Runnable onLoaded) {
+        if (!loading.add(pending)) return false;
+        ContextValueParser.loadPending(project, pending, nodes -> {
+            loading.remove(pending);
+            DefaultTreeModel model = (DefaultTreeModel) tree.getModel();
+            // Cancelled, or the tree was refreshed while loading
+            if (!nodes.contains(pending) && pending.getParent() != null && pending.getRoot() == model.getRoot()) {
+                DefaultMutableTreeNode parent = (DefaultMutableTreeNode) pending.getParent();
+                int index = parent.getIndex(pending);
+                model.removeNodeFromParent(pending);
+                for (DefaultMutableTreeNode node : nodes) {
+                    model.insertNodeInto(node, parent, index++);
+                }
+            }
+            onLoaded.run();
+        });
+        return true;
+    }
+
     private void insertTextToEditor(String text) {
         Editor editor = FileEditorManager.getInstance(project).getSelectedTextEditor();
         if (editor == null) return;
@@ -12,7 +12,7 @@ public class ContextTreeToolWindowFactory implements ToolWindowFactory {
 
     @Override
     public void createToolWindowContent(@NotNull Project project, @NotNull ToolWindow toolWindow) {
-        ContextTreePanel panel = new ContextTreePanel(project);
+        ContextTreePanel panel = new ContextTreePanel(project, toolWindow.getDisposable());
         ContentFactory contentFactory = ContentFactory.SERVICE.getInstance();
         Content content = contentFactory.createContent(panel.getMainPanel(), "", false);
         toolWindow.getContentManager().addContent(content);
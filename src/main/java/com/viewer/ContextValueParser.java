@@ -1,24 +1,30 @@
 package com.viewer;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonNull;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonPrimitive;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.intellij.debugger.DebuggerManagerEx;
 import com.intellij.debugger.engine.JavaStackFrame;
 import com.intellij.debugger.engine.JavaValue;
+import com.intellij.debugger.engine.SuspendContextImpl;
 import com.intellij.debugger.engine.evaluation.EvaluateException;
+import com.intellij.debugger.engine.evaluation.EvaluationContextImpl;
+import com.intellij.debugger.engine.events.SuspendContextCommandImpl;
+import com.intellij.debugger.impl.DebuggerContextImpl;
 import com.intellij.debugger.impl.DebuggerSession;
 import com.intellij.debugger.jdi.LocalVariableProxyImpl;
 import com.intellij.debugger.jdi.StackFrameProxyImpl;
 import com.intellij.debugger.ui.impl.watch.ValueDescriptorImpl;
 import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.util.ProgressWindow;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Key;
 import com.intellij.ui.SimpleTextAttributes;
+import com.intellij.util.concurrency.AppExecutorUtil;
 import com.intellij.xdebugger.XDebugSession;
 import com.intellij.xdebugger.XDebuggerManager;
 import com.intellij.xdebugger.evaluation.XDebuggerEvaluator;
@@ -34,12 +40,34 @@ import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 import javax.swing.tree.DefaultMutableTreeNode;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 
 public class ContextValueParser {
 
+    private static final Logger LOG = Logger.getInstance(ContextValueParser.class);
+
     private static final String TARGET_VARIABLE_NAME = "context";
+    private static final String SERIALIZER_CLASS_NAME = ContextSerializer.class.getName();
+    private static final long CANCEL_POLL_MS = 100;
+    private static final int ARRAY_WINDOW = 4096; // Array elements per JDWP request
+    private static final int ALLOCATION_ATTEMPTS = 5;
+    private static final Key<Capture> LAST_CAPTURE = Key.create("variableViewer.lastContextCapture");
 
     private static final Set<String> PRIMITIVE_WRAPPER_TYPES = new HashSet<>();
     private static final Map<String, String> UNBOXING_METHODS = new HashMap<>();
@@ -81,178 +109,933 @@ public class ContextValueParser {
     }
 
     /**
-     * 解析当前调试帧中的 context 变量
+     * 在调试器管理线程上解析当前调试帧中的 context 变量，期间显示可取消的进度。结果在 EDT 上交给 {@code onResult}。
+     */
+    public static void parseContext(Project project, Consumer<DefaultMutableTreeNode> onResult) {
+        parseContext(project, null, onResult);
+    }
+
+    /**
+     * 同上；{@code exportFile} 不为 null 时改为把完整的 context 以 JSON 写入该文件，不构建树，结果节点只说明导出是否成功。
+     * 导出时不受懒加载的深度和分页限制，值经 JDI 逐个读出并写入文件；共享的对象每处都完整写出，和 DebugUtil.dump 的格式一致，
+     * 只有循环引用写成占位字符串。失败或取消时删除写了一半的文件。
      */
-    public static DefaultMutableTreeNode parseContext(Project project) {
-        if (project == null) return new DefaultMutableTreeNode("project Null");
+    public static void parseContext(Project project, @Nullable Path exportFile, Consumer<DefaultMutableTreeNode> onResult) {
+        if (project == null) {
+            onResult.accept(new DefaultMutableTreeNode("project Null"));
+            return;
+        }
         DebuggerSession session = DebuggerManagerEx.getInstanceEx(project)
                 .getContext().getDebuggerSession();
 
-        if (session == null) return new DefaultMutableTreeNode("not start debug");
+        if (session == null) {
+            onResult.accept(new DefaultMutableTreeNode("not start debug"));
+            return;
+        }
+        runOnManagerThread(session, "Capturing _context",
+                (suspendContext, indicator, giveUp) -> parseContext(project, session, suspendContext, exportFile, indicator, giveUp),
+                () -> new DefaultMutableTreeNode(exportFile == null ? "capture cancelled" : "export cancelled"),
+                reason -> new DefaultMutableTreeNode((exportFile == null ? "parse timeout: " : "export failed: ") + reason),
+                onResult);
+    }
+
+    private static DefaultMutableTreeNode parseContext(Project project, DebuggerSession session, SuspendContextImpl suspendContext,
+                                                       @Nullable Path exportFile, ProgressIndicator indicator,
+                                                       Consumer<String> giveUp) {
         StackFrameProxyImpl stackFrameProxy = session.getProcess()
                 .getDebuggerContext()
                 .getFrameProxy();
+        if (stackFrameProxy == null) return new DefaultMutableTreeNode("not paused");
         try {
+            JdiMetadataCache metadataCache = JdiMetadataCache.getInstance(session);
+            JsonViewerSettingsState settings = JsonViewerSettingsState.getInstance();
+            boolean lazy = settings.contextLazyLoading && exportFile == null;
+            Capture capture;
+            if (exportFile != null) {
+                // A reference to an object written elsewhere could not be resolved by anything reading the file
+                capture = new Capture(metadataCache, 0, 0, 0, 0, settings.contextInvocationTimeoutMs, false);
+            } else if (lazy) {
+                capture = new Capture(metadataCache, settings.contextMaxDepth, settings.contextPageSize,
+                        settings.contextStringLimit, settings.contextArrayPreview, settings.contextInvocationTimeoutMs, true);
+            } else {
+                capture = new Capture(metadataCache, 0, 0,
+                        settings.contextStringLimit, settings.contextArrayPreview, settings.contextInvocationTimeoutMs, true);
+            }
+            capture.indicator = indicator;
+            capture.giveUp = giveUp;
+            capture.evaluationContext = new EvaluationContextImpl(suspendContext, stackFrameProxy);
+            capture.previous = session.getProcess().getUserData(LAST_CAPTURE);
+
             ObjectReference objectReference = stackFrameProxy.thisObject();
             ObjectReference scriptInstance = (ObjectReference) objectReference;
-            Field bindingField = scriptInstance.referenceType().fieldByName("binding");
-            Value bindingValue = scriptInstance.getValue(bindingField);
+            // Only Groovy scripts have a binding; automatic captures also run in static and plain Java frames
+            Field bindingField = scriptInstance == null ? null : scriptInstance.referenceType().fieldByName("binding");
+            Value bindingValue = bindingField == null ? null : scriptInstance.getValue(bindingField);
+            if (!(bindingValue instanceof ObjectReference)) {
+                return new DefaultMutableTreeNode("no binding in this frame");
+            }
             ObjectReference bindingObject = (ObjectReference) bindingValue;
             Field varsField = bindingObject.referenceType().fieldByName("variables");
-            Value varsValue = bindingObject.getValue(varsField);
+            Value varsValue = varsField == null ? null : bindingObject.getValue(varsField);
+            if (!(varsValue instanceof ObjectReference)) {
+                return new DefaultMutableTreeNode("no binding variables in this frame");
+            }
             ObjectReference varsMap = (ObjectReference) varsValue;
             Method getMethod = varsMap.referenceType().methodsByName("get", "(Ljava/lang/Object;)Ljava/lang/Object;").get(0);
             Value arg = session.getProcess().getVirtualMachineProxy().mirrorOf("_context");
-            Value contextValue = varsMap.invokeMethod(
-                    stackFrameProxy.threadProxy().getThreadReference(),
-                    getMethod,
-                    List.of(arg),
-                    ObjectReference.INVOKE_SINGLE_THREADED
-            );
-            JsonElement jsonTree = convertJdiValueToJson((ObjectReference) contextValue, stackFrameProxy, new HashSet<>());
-
-            Gson gson = new GsonBuilder().setPrettyPrinting().create();
-            // String jsonString = gson.toJson(jsonTree);
+            Value contextValue = capture.invokeMethod(varsMap, getMethod, List.of(arg));
+            String serialized = null;
+            if (!lazy && exportFile == null) {
+                // 懒加载只能逐层遍历，一次性序列化拿不到未加载部分的对象引用；
+                // 导出不限长度，一次性序列化会在被调试进程里把整个对象图拼成一个字符串，所以也逐个值遍历
+                serialized = serializeInDebuggee((ObjectReference) contextValue, scriptInstance, capture);
+            }
+
+            if (exportFile != null) {
+                // The export is not limited, a tree of it would hold the whole graph in the IDE as well
+                try (ContextJsonWriter export = new ContextJsonWriter(Files.newBufferedWriter(exportFile, StandardCharsets.UTF_8))) {
+                    walkValue(contextValue, capture, new HashSet<>(), 0, export);
+                } catch (Exception ex) {
+                    deletePartialExport(exportFile);
+                    throw ex;
+                } finally {
+                    capture.previous = null;
+                }
+                return new DefaultMutableTreeNode("exported to " + exportFile);
+            }
+
             DefaultMutableTreeNode root = new DefaultMutableTreeNode("_context");
-            buildTree(jsonTree, root);
+            ContextVisitor visitor = new TreeVisitor(capture, root);
+            try {
+                if (serialized != null) {
+                    replay(serialized, visitor);
+                } else {
+                    walkValue(contextValue, capture, new HashSet<>(), 0, visitor);
+                }
+            } catch (Exception ex) {
+                // Nothing shows the pages of a failed capture
+                capture.releasePinned();
+                throw ex;
+            } finally {
+                // Only one stop back is needed, dropping the link keeps older captures collectable
+                capture.previous = null;
+            }
+            Capture replaced = session.getProcess().getUserData(LAST_CAPTURE);
+            session.getProcess().putUserData(LAST_CAPTURE, capture);
+            if (replaced != null) {
+                // The panel shows the new tree from now on, the old one's unloaded pages are never loaded
+                replaced.releasePinned();
+            }
             return root;
-            // System.out.println("--- " + TARGET_VARIABLE_NAME + " 的 JSON 对象树 ---");
-            // System.out.println(jsonString);
-            // System.out.println("--- 结束 ---");
+        } catch (ProcessCanceledException ex) {
+            throw ex;
+        } catch (TimeoutException ex) {
+            LOG.info(ex);
+            return new DefaultMutableTreeNode((exportFile == null ? "parse timeout: " : "export failed: ") + ex.getMessage());
+        } catch (Exception ex) {
+            LOG.warn("Could not capture _context", ex);
+            return new DefaultMutableTreeNode(exportFile == null ? "parse err" : "export failed: " + ex);
+        }
+    }
+
+    // A failed or cancelled export must not leave a file that looks like a complete one
+    private static void deletePartialExport(Path exportFile) {
+        try {
+            Files.deleteIfExists(exportFile);
+        } catch (IOException e) {
+            LOG.warn("Could not delete the partial export " + exportFile, e);
+        }
+    }
+
+
+    /**
+     * 在调试器管理线程上加载占位节点对应的内容：未展开的对象，或集合的下一页。
+     * 返回的节点按顺序替换占位节点，在 EDT 上交给 {@code onResult}。
+     */
+    public static void loadPending(Project project, PendingContextNode pending, Consumer<List<DefaultMutableTreeNode>> onResult) {
+        DebuggerSession session = DebuggerManagerEx.getInstanceEx(project)
+                .getContext().getDebuggerSession();
+        if (session == null) {
+            onResult.accept(List.of(new DefaultMutableTreeNode("not start debug")));
+            return;
+        }
+        runOnManagerThread(session, "Loading _context",
+                (suspendContext, indicator, giveUp) -> loadPending(pending, suspendContext, indicator, giveUp),
+                () -> List.of(pending),
+                reason -> List.of(new DefaultMutableTreeNode("load err: " + reason)),
+                onResult);
+    }
+
+    private static List<DefaultMutableTreeNode> loadPending(PendingContextNode pending, SuspendContextImpl suspendContext,
+                                                            ProgressIndicator indicator, Consumer<String> giveUp) {
+        DefaultMutableTreeNode holder = new DefaultMutableTreeNode();
+        Capture capture = pending.capture;
+        capture.indicator = indicator;
+        capture.giveUp = giveUp;
+        capture.evaluationContext = new EvaluationContextImpl(suspendContext, suspendContext.getFrameProxy());
+        try {
+            TreeVisitor visitor = new TreeVisitor(capture, holder);
+            if (pending.isDeferred()) {
+                walkValue(pending.value, capture, new HashSet<>(), 0, visitor);
+            } else if (pending.isPartialString()) {
+                visitor.value(((StringReference) pending.value).value());
+            } else {
+                walkPage(pending.page, capture, new HashSet<>(), 0, visitor);
+            }
+            // The holder goes away, its children end up where the placeholder was
+            DefaultMutableTreeNode parent = (DefaultMutableTreeNode) pending.getParent();
+            capture.nodesById.replaceAll((nodeId, node) -> node == holder ? parent : node);
+        } catch (ProcessCanceledException ex) {
+            throw ex;
         } catch (Exception ex) {
-            ex.printStackTrace();
-            return new DefaultMutableTreeNode("parse err");
+            // Mostly the debuggee was resumed meanwhile, its objects may be gone or no longer invocable
+            LOG.info("Could not load context node", ex);
+            holder.add(new DefaultMutableTreeNode("load err: " + ex.getMessage()));
+        }
+        List<DefaultMutableTreeNode> nodes = new ArrayList<>();
+        while (holder.getChildCount() > 0) {
+            DefaultMutableTreeNode child = (DefaultMutableTreeNode) holder.getFirstChild();
+            holder.remove(0);
+            nodes.add(child);
+        }
+        return nodes;
+    }
+
+    /**
+     * Runs {@code action} as a command on the debugger manager thread, the only thread IntelliJ expects JDI
+     * traffic on, with a cancellable progress window. The result, or {@code cancelled} if the user or the debugger
+     * cancelled the command, is handed to {@code onResult} on the EDT, once. A command hung in a method call stays
+     * blocked until the call returns, so the action gets a callback to give up early with: given the reason it
+     * delivers {@code timedOut}, given null {@code cancelled}, and whatever the command returns later is dropped.
+     */
+    private static <T> void runOnManagerThread(DebuggerSession session, String title, ManagerAction<T> action,
+                                               Supplier<T> cancelled, Function<String, T> timedOut, Consumer<T> onResult) {
+        DebuggerContextImpl debuggerContext = session.getProcess().getDebuggerContext();
+        SuspendContextImpl suspendContext = debuggerContext.getSuspendContext();
+        if (suspendContext == null) {
+            onResult.accept(cancelled.get());
+            return;
+        }
+        ProgressWindow progress = new ProgressWindow(true, session.getProject());
+        progress.setTitle(title);
+        AtomicBoolean delivered = new AtomicBoolean();
+        Consumer<T> deliver = result -> {
+            if (delivered.compareAndSet(false, true)) {
+                ApplicationManager.getApplication().invokeLater(() -> onResult.accept(result));
+            }
+        };
+        Consumer<String> giveUp = reason -> deliver.accept(reason != null ? timedOut.apply(reason) : cancelled.get());
+        SuspendContextCommandImpl command = new SuspendContextCommandImpl(suspendContext) {
+            @Override
+            public void contextAction(@NotNull SuspendContextImpl suspendContext) {
+                T result;
+                try {
+                    result = action.run(suspendContext, progress, giveUp);
+                } catch (ProcessCanceledException e) {
+                    result = cancelled.get();
+                }
+                deliver.accept(result);
+            }
+
+            @Override
+            protected void commandCancelled() {
+                deliver.accept(cancelled.get());
+            }
+        };
+        session.getProcess().getManagerThread().startProgress(command, progress);
+    }
+
+    /**
+     * Feeds the JSON produced by {@link ContextSerializer} to the visitor, token by token. Containers get the numbers
+     * the serializer gave them, counted in the same order, so its references become reference events as well.
+     */
+    private static void replay(String json, ContextVisitor visitor) throws IOException {
+        JsonReader reader = new JsonReader(new StringReader(json));
+        int depth = 0;
+        int nextId = 0;
+        do {
+            JsonToken token = reader.peek();
+            switch (token) {
+                case BEGIN_OBJECT:
+                    reader.beginObject();
+                    visitor.beginObject(nextId++);
+                    depth++;
+                    break;
+                case END_OBJECT:
+                    reader.endObject();
+                    visitor.endObject();
+                    depth--;
+                    break;
+                case BEGIN_ARRAY:
+                    reader.beginArray();
+                    visitor.beginArray(nextId++);
+                    depth++;
+                    break;
+                case END_ARRAY:
+                    reader.endArray();
+                    visitor.endArray();
+                    depth--;
+                    break;
+                case NAME:
+                    visitor.name(reader.nextName());
+                    break;
+                case STRING:
+                    replayString(reader.nextString(), visitor);
+                    break;
+                case NUMBER:
+                    visitor.number(reader.nextString());
+                    break;
+                case BOOLEAN:
+                    visitor.value(reader.nextBoolean());
+                    break;
+                case NULL:
+                    reader.nextNull();
+                    visitor.nullValue();
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected " + token);
+            }
+        } while (depth > 0);
+    }
+
+    private static void replayString(String value, ContextVisitor visitor) {
+        if (value.length() < 2 || value.charAt(0) != ContextSerializer.MARKER) {
+            visitor.value(value);
+        } else if (value.charAt(1) == ContextSerializer.MARKER) {
+            visitor.value(value.substring(1));
+        } else if (value.charAt(1) == ContextSerializer.REFERENCE) {
+            long id = Long.parseLong(value.substring(2));
+            visitor.reference(id, "<<REF_TO_ID:" + id + ">>");
+        } else {
+            visitor.value("<<CIRCULAR_REFERENCE_TO_ID:" + value.substring(2) + ">>");
+        }
+    }
+
+    /**
+     * 在被调试进程中一次性序列化 context：把 {@link ContextSerializer} 注入脚本的 ClassLoader，调用一次 serialize，
+     * 整个对象图作为一个 JSON 字符串传回。注入或调用失败时返回 null，由调用方退回逐个字段遍历。
+     */
+    private static String serializeInDebuggee(ObjectReference contextRef, ObjectReference scriptInstance, Capture capture) throws TimeoutException {
+        if (contextRef == null) {
+            return null;
+        }
+        try {
+            ClassType serializerType = loadSerializer(scriptInstance.referenceType().classLoader(), capture);
+            if (serializerType == null) {
+                return null;
+            }
+            Method serialize = serializerType.concreteMethodByName("serialize", "(Ljava/lang/Object;II)Ljava/lang/String;");
+            VirtualMachine vm = contextRef.virtualMachine();
+            List<Value> args = List.of(contextRef, vm.mirrorOf(capture.stringLimit), vm.mirrorOf(capture.arrayPreview));
+            Value json = capture.invokeMethod(serializerType, serialize, args);
+            if (!(json instanceof StringReference)) {
+                return null;
+            }
+            return ((StringReference) json).value();
+        } catch (ProcessCanceledException | TimeoutException e) {
+            // The thread may still be busy in the debuggee, the walker could not invoke anything on it either
+            throw e;
+        } catch (Exception e) {
+            // Old target JVMs reject the class version, sandboxed ones the definition; the walker still works there
+            LOG.info("In-debuggee serialization failed, walking the context over JDI instead", e);
+            return null;
+        }
+    }
+
+    // Defines ContextSerializer in the given loader unless an earlier capture already did, and initializes it
+    private static ClassType loadSerializer(ClassLoaderReference loader, Capture capture) throws Exception {
+        if (loader == null) {
+            return null;
         }
+        VirtualMachine vm = loader.virtualMachine();
+        ReferenceType existing = null;
+        for (ReferenceType loaded : vm.classesByName(SERIALIZER_CLASS_NAME)) {
+            if (loader.equals(loaded.classLoader())) {
+                existing = loaded;
+            }
+        }
+        if (existing != null && existing.isInitialized()) {
+            return (ClassType) existing;
+        }
+        if (existing == null && !defineSerializer(loader, capture)) {
+            return null;
+        }
+        // Static methods can only be invoked on initialized classes
+        ClassType classType = (ClassType) vm.classesByName("java.lang.Class").get(0);
+        Method forName = classType.concreteMethodByName("forName", "(Ljava/lang/String;ZLjava/lang/ClassLoader;)Ljava/lang/Class;");
+        ClassObjectReference classObject = (ClassObjectReference) capture.invokeMethod(classType, forName,
+                List.of(vm.mirrorOf(SERIALIZER_CLASS_NAME), vm.mirrorOf(true), loader));
+        return (ClassType) classObject.reflectedType();
     }
 
+    private static boolean defineSerializer(ClassLoaderReference loader, Capture capture) throws Exception {
+        byte[] classBytes;
+        try (InputStream in = ContextSerializer.class.getResourceAsStream(ContextSerializer.class.getSimpleName() + ".class")) {
+            if (in == null) {
+                return false;
+            }
+            classBytes = in.readAllBytes();
+        }
+        VirtualMachine vm = loader.virtualMachine();
+        List<ReferenceType> byteArrayTypes = vm.classesByName("byte[]");
+        if (byteArrayTypes.isEmpty()) {
+            return false;
+        }
+        // Keep the array alive until defineClass has read it
+        ArrayReference remoteBytes = newPinnedArray((ArrayType) byteArrayTypes.get(0), classBytes.length);
+        try {
+            List<Value> values = new ArrayList<>(classBytes.length);
+            for (byte b : classBytes) {
+                values.add(vm.mirrorOf(b));
+            }
+            remoteBytes.setValues(values);
+            // defineClass is protected, JDI does not enforce access checks
+            Method defineClass = ((ClassType) loader.referenceType())
+                    .concreteMethodByName("defineClass", "(Ljava/lang/String;[BII)Ljava/lang/Class;");
+            capture.invokeMethod(loader, defineClass,
+                    List.of(vm.mirrorOf(SERIALIZER_CLASS_NAME), remoteBytes, vm.mirrorOf(0), vm.mirrorOf(classBytes.length)));
+            return true;
+        } finally {
+            remoteBytes.enableCollection();
+        }
+    }
 
-    private static void buildTree(JsonElement element, DefaultMutableTreeNode parent) {
-        if (element.isJsonObject()) {
-            JsonObject jsonObject = element.getAsJsonObject();
-            for (Map.Entry<String, JsonElement> entry : jsonObject.entrySet()) {
-                DefaultMutableTreeNode childNode = new DefaultMutableTreeNode(entry.getKey());
-                parent.add(childNode);
-                buildTree(entry.getValue(), childNode);
+    // Other threads of the debuggee keep running, the new array can be collected before disableCollection gets to it
+    private static ArrayReference newPinnedArray(ArrayType type, int length) {
+        for (int attempt = 1; ; attempt++) {
+            ArrayReference array = type.newInstance(length);
+            try {
+                array.disableCollection();
+                return array;
+            } catch (ObjectCollectedException e) {
+                if (attempt == ALLOCATION_ATTEMPTS) {
+                    throw e;
+                }
             }
-        } else if (element.isJsonArray()) {
-            JsonArray jsonArray = element.getAsJsonArray();
-            for (int i = 0; i < jsonArray.size(); i++) {
-                buildTree(jsonArray.get(i), parent);
+        }
+    }
+
+    /**
+     * Walks a remote value and everything reachable from it, reporting it to {@code visitor} as it is read. The graph
+     * is walked on an explicit stack of {@link Children}, so deeply linked structures need heap for one frame per
+     * level rather than thread stack.
+     */
+    private static void walkValue(Value value, Capture capture, Set<Long> visitedIds, int depth, ContextVisitor visitor) throws Exception {
+        Deque<Children> stack = new ArrayDeque<>();
+        open(value, capture, visitedIds, depth, stack, visitor);
+        walkChildren(stack, capture, visitedIds, visitor);
+    }
+
+    /**
+     * Walks the elements of a collection, map or array from where {@code start} left off, at most one page of them.
+     */
+    private static void walkPage(Page start, Capture capture, Set<Long> visitedIds, int depth, ContextVisitor visitor) throws Exception {
+        if (start.iterator && !capture.isPinned(start.node)) {
+            throw new IllegalStateException("the page was released by a newer capture");
+        }
+        Children page = null;
+        try {
+            page = readPage(start.container, start, capture, depth, -1);
+            if (page == null) {
+                visitor.nullValue();
+                return;
+            }
+            Deque<Children> stack = new ArrayDeque<>();
+            page.begin(visitor);
+            stack.push(page);
+            walkChildren(stack, capture, visitedIds, visitor);
+        } finally {
+            // The iterator stays pinned if the following page continues with it
+            if (start.iterator && (page == null || page.rest == null || page.rest.node != start.node)) {
+                capture.unpin(start.node);
             }
-        } else if (element.isJsonPrimitive()) {
-            parent.add(new DefaultMutableTreeNode(element.getAsString()));
         }
     }
 
-    private static JsonElement convertJdiValueToJson(Value value, StackFrameProxyImpl frameProxy, Set<Long> visitedIds) throws Exception {
+    // Walks the children of the containers on the stack, pushing the ones found among them, until all are complete
+    private static void walkChildren(Deque<Children> stack, Capture capture, Set<Long> visitedIds, ContextVisitor visitor) throws Exception {
+        while (!stack.isEmpty()) {
+            Children top = stack.peek();
+            if (top.next == top.values.size()) {
+                stack.pop();
+                top.end(visitor);
+                if (top.id >= 0) {
+                    visitedIds.remove(top.id);
+                    if (capture.linkRepeats) {
+                        capture.convertedIds.add(top.id);
+                    }
+                }
+                continue;
+            }
+            int index = top.next++;
+            if (top.names != null) {
+                visitor.name(top.names.get(index));
+            }
+            open(top.values.get(index), capture, visitedIds, top.depth + 1, stack, visitor);
+        }
+    }
+
+    /**
+     * Reports a value that needs no walking. Objects, collections, maps and arrays are only begun here; their
+     * {@link Children} are pushed and walked afterwards.
+     */
+    private static void open(Value value, Capture capture, Set<Long> visitedIds, int depth, Deque<Children> stack, ContextVisitor visitor) throws Exception {
+        capture.indicator.checkCanceled();
         if (value == null) {
-            return JsonNull.INSTANCE;
+            visitor.nullValue();
+            return;
         }
 
+        if (value instanceof ObjectReference && PRIMITIVE_WRAPPER_TYPES.contains(((ObjectReference) value).referenceType().name())) {
+            value = unboxed((ObjectReference) value, capture);
+        }
         if (value instanceof StringReference) {
-            return new JsonPrimitive(((StringReference) value).value());
+            visitString((StringReference) value, capture, visitor);
+            return;
         }
         if (value instanceof PrimitiveValue) {
-            if (value instanceof BooleanValue) return new JsonPrimitive(((BooleanValue) value).booleanValue());
-            if (value instanceof CharValue) return new JsonPrimitive(((CharValue) value).charValue());
-            if (value instanceof ByteValue) return new JsonPrimitive(((ByteValue)value).value());
-            if (value instanceof ShortValue) return new JsonPrimitive(((ShortValue)value).value());
-            if (value instanceof IntegerValue) return new JsonPrimitive(((IntegerValue)value).value());
-            if (value instanceof LongValue) return new JsonPrimitive(((LongValue)value).value());
-            if (value instanceof FloatValue) return new JsonPrimitive(((FloatValue)value).value());
-            if (value instanceof DoubleValue) return new JsonPrimitive(((DoubleValue)value).value());
-            return new JsonPrimitive(value.toString());
+            if (value instanceof BooleanValue) visitor.value(((BooleanValue) value).booleanValue());
+            else if (value instanceof CharValue) visitor.value(String.valueOf(((CharValue) value).charValue()));
+            else if (value instanceof ByteValue) visitor.number(String.valueOf(((ByteValue) value).value()));
+            else if (value instanceof ShortValue) visitor.number(String.valueOf(((ShortValue) value).value()));
+            else if (value instanceof IntegerValue) visitor.number(String.valueOf(((IntegerValue) value).value()));
+            else if (value instanceof LongValue) visitor.number(String.valueOf(((LongValue) value).value()));
+            else if (value instanceof FloatValue) visitor.number(String.valueOf(((FloatValue) value).value()));
+            else if (value instanceof DoubleValue) visitor.number(String.valueOf(((DoubleValue) value).value()));
+            else visitor.value(value.toString());
+            return;
         }
 
         if (!(value instanceof ObjectReference)) {
-            return new JsonPrimitive(value.toString());
+            visitor.value(value.toString());
+            return;
         }
 
         ObjectReference objRef = (ObjectReference) value;
         long uniqueID = objRef.uniqueID();
         if (visitedIds.contains(uniqueID)) {
-            return new JsonPrimitive("<<CIRCULAR_REFERENCE_TO_ID:" + uniqueID + ">>");
+            visitor.value("<<CIRCULAR_REFERENCE_TO_ID:" + uniqueID + ">>");
+            return;
+        }
+        if (capture.convertedIds.contains(uniqueID)) {
+            // Already walked elsewhere in this capture, link to it instead of fetching it again
+            visitor.reference(uniqueID, "<<REF_TO_ID:" + uniqueID + ">>");
+            return;
+        }
+
+        if (capture.arrayPreview > 0 && objRef instanceof ArrayReference
+                && ((ArrayType) objRef.referenceType()).componentSignature().length() == 1) {
+            // A primitive array would be a node per element, its first elements tell more at a glance
+            visitor.value(primitiveArrayPreview((ArrayReference) objRef, capture.arrayPreview));
+            return;
+        }
+
+        if (capture.maxDepth > 0 && depth >= capture.maxDepth) {
+            // Fetched once the user expands it
+            visitor.deferred(objRef);
+            return;
+        }
+
+        Children children = readPage(objRef, null, capture, depth, uniqueID);
+        if (children == null) {
+            List<Field> instanceFields = new ArrayList<>();
+            List<String> names = new ArrayList<>();
+            for (Field field : objRef.referenceType().allFields()) {
+                if (!field.isStatic()) {
+                    instanceFields.add(field);
+                    names.add(field.name());
+                }
+            }
+            // One request for all fields instead of one per field
+            Map<Field, Value> fieldValues = objRef.getValues(instanceFields);
+            List<Value> values = new ArrayList<>(instanceFields.size());
+            for (Field field : instanceFields) {
+                values.add(fieldValues.get(field));
+            }
+            children = new Children(names, values, depth, uniqueID, null);
         }
         visitedIds.add(uniqueID);
+        children.begin(visitor);
+        stack.push(children);
+    }
 
+    /**
+     * Reads the elements of a collection, map or array, at most one page of them: from the start, or from where
+     * {@code from} left off. Returns null if {@code objRef} is none of these.
+     */
+    private static Children readPage(ObjectReference objRef, @Nullable Page from, Capture capture, int depth, long id) throws Exception {
         ReferenceType type = objRef.referenceType();
         String typeName = type.name();
-        ThreadReference threadRef = frameProxy.threadProxy().getThreadReference();
+        JdiMetadataCache cache = capture.cache;
+        int offset = from == null ? 0 : from.offset;
+        int limit = capture.pageSize > 0 ? capture.pageSize : Integer.MAX_VALUE;
+        int max = limit == Integer.MAX_VALUE ? limit : limit + 1;
+        // Linked structures continue from the node the previous page stopped at instead of walking up to it again
+        Cursor cursor = new Cursor(from);
 
-        try {
-            // --- NEW: Handle primitive wrapper types by unboxing them ---
-            if (PRIMITIVE_WRAPPER_TYPES.contains(typeName)) {
-                String methodName = UNBOXING_METHODS.get(typeName);
-                String methodSignature = UNBOXING_SIGNATURES.get(typeName);
-                // Remotely call the unboxing method (e.g., intValue(), booleanValue())
-                Value unboxedValue = invokeRemoteMethod(objRef, threadRef, methodName, methodSignature, Collections.emptyList());
-                // Recursively call this function with the now-primitive value
-                return convertJdiValueToJson(unboxedValue, frameProxy, visitedIds);
-            }
-            // --- End of new logic block ---
-
-            if (isAssignable(type, "java.util.Collection")) {
-                JsonArray jsonArray = new JsonArray();
-                ObjectReference iterator = (ObjectReference) invokeRemoteMethod(objRef, threadRef, "iterator", "()Ljava/util/Iterator;", Collections.emptyList());
-                while (((BooleanValue) invokeRemoteMethod(iterator, threadRef, "hasNext", "()Z", Collections.emptyList())).value()) {
-                    Value element = invokeRemoteMethod(iterator, threadRef, "next", "()Ljava/lang/Object;", Collections.emptyList());
-                    jsonArray.add(convertJdiValueToJson(element, frameProxy, visitedIds));
+        List<Value> elements;
+        List<Value[]> entries = null;
+        if (objRef instanceof ArrayReference) {
+            ArrayReference arrayRef = (ArrayReference) objRef;
+            int start = Math.min(offset, arrayRef.length());
+            elements = getValues(arrayRef, start, Math.min(arrayRef.length() - start, max), capture);
+        } else {
+            // Standard JDK collections are read straight from their fields, nothing runs in the debuggee
+            elements = readJdkCollection(objRef, typeName, offset, max, cursor, capture);
+            if (elements == null) {
+                entries = readJdkMap(objRef, typeName, max, cursor, capture);
+            }
+            if (elements == null && entries == null) {
+                // Anything else is read through an iterator, which is kept for the next page
+                if (isAssignable(type, "java.util.Collection", cache)) {
+                    ObjectReference iterator = cursor.node != null ? cursor.node
+                            : (ObjectReference) invokeRemoteMethod(objRef, capture, "iterator", "()Ljava/util/Iterator;", Collections.emptyList());
+                    elements = new ArrayList<>();
+                    while (elements.size() < max && hasNext(iterator, limit, elements.size(), cursor, capture)) {
+                        elements.add(invokeRemoteMethod(iterator, capture, "next", "()Ljava/lang/Object;", Collections.emptyList()));
+                    }
+                } else if (isAssignable(type, "java.util.Map", cache)) {
+                    ObjectReference iterator = cursor.node;
+                    if (iterator == null) {
+                        ObjectReference entrySet = (ObjectReference) invokeRemoteMethod(objRef, capture, "entrySet", "()Ljava/util/Set;", Collections.emptyList());
+                        iterator = (ObjectReference) invokeRemoteMethod(entrySet, capture, "iterator", "()Ljava/util/Iterator;", Collections.emptyList());
+                    }
+                    entries = new ArrayList<>();
+                    while (entries.size() < max && hasNext(iterator, limit, entries.size(), cursor, capture)) {
+                        ObjectReference entry = (ObjectReference) invokeRemoteMethod(iterator, capture, "next", "()Ljava/lang/Object;", Collections.emptyList());
+                        Value key = invokeRemoteMethod(entry, capture, "getKey", "()Ljava/lang/Object;", Collections.emptyList());
+                        Value val = invokeRemoteMethod(entry, capture, "getValue", "()Ljava/lang/Object;", Collections.emptyList());
+                        entries.add(new Value[]{key, val});
+                    }
+                } else {
+                    return null;
                 }
-                return jsonArray;
             }
+        }
 
-            if (isAssignable(type, "java.util.Map")) {
-                JsonObject jsonObject = new JsonObject();
-                ObjectReference entrySet = (ObjectReference) invokeRemoteMethod(objRef, threadRef, "entrySet", "()Ljava/util/Set;", Collections.emptyList());
-                ObjectReference iterator = (ObjectReference) invokeRemoteMethod(entrySet, threadRef, "iterator", "()Ljava/util/Iterator;", Collections.emptyList());
+        // One element more than shown tells whether there is another page, an iterator says so without reading it
+        int read = elements != null ? elements.size() : entries.size();
+        Page rest = read > limit || cursor.iterator ? new Page(objRef, offset + limit, cursor, capture) : null;
+        if (elements != null) {
+            return new Children(null, elements.subList(0, Math.min(elements.size(), limit)), depth, id, rest);
+        } else {
+            int count = Math.min(entries.size(), limit);
+            List<String> names = new ArrayList<>(count);
+            List<Value> values = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                names.add(mapKeyString(entries.get(i)[0], capture));
+                values.add(entries.get(i)[1]);
+            }
+            return new Children(names, values, depth, id, rest);
+        }
+    }
 
-                while (((BooleanValue) invokeRemoteMethod(iterator, threadRef, "hasNext", "()Z", Collections.emptyList())).value()) {
-                    ObjectReference entry = (ObjectReference) invokeRemoteMethod(iterator, threadRef, "next", "()Ljava/lang/Object;", Collections.emptyList());
-                    Value key = invokeRemoteMethod(entry, threadRef, "getKey", "()Ljava/lang/Object;", Collections.emptyList());
-                    Value val = invokeRemoteMethod(entry, threadRef, "getValue", "()Ljava/lang/Object;", Collections.emptyList());
-                    String keyStr = (key instanceof StringReference) ? ((StringReference) key).value() : key.toString();
-                    jsonObject.add(keyStr, convertJdiValueToJson(val, frameProxy, visitedIds));
+    // Whether the iterator has another element to read into this page; once the page is full, it is kept for the next one
+    private static boolean hasNext(ObjectReference iterator, int limit, int read, Cursor cursor, Capture capture) throws Exception {
+        boolean hasNext = ((BooleanValue) invokeRemoteMethod(iterator, capture, "hasNext", "()Z", Collections.emptyList())).value();
+        if (hasNext && read == limit) {
+            cursor.node = iterator;
+            cursor.iterator = true;
+            return false;
+        }
+        return hasNext;
+    }
+
+    // Boxed values are immutable, so one already read at the previous stop is known by its identity alone
+    private static Value unboxed(ObjectReference boxed, Capture capture) throws Exception {
+        Value value = capture.unboxed.get(boxed);
+        if (value == null && capture.previous != null) {
+            value = capture.previous.unboxed.get(boxed);
+        }
+        if (value == null) {
+            value = unbox(boxed, capture);
+        }
+        capture.unboxed.put(boxed, value);
+        return value;
+    }
+
+    // Wrappers keep their primitive in a final field named value; the unboxing method is only a fallback
+    private static Value unbox(ObjectReference boxed, Capture capture) throws Exception {
+        ReferenceType type = boxed.referenceType();
+        Field valueField = type.fieldByName("value");
+        if (valueField != null) {
+            return boxed.getValue(valueField);
+        }
+        String typeName = type.name();
+        return invokeRemoteMethod(boxed, capture, UNBOXING_METHODS.get(typeName), UNBOXING_SIGNATURES.get(typeName), Collections.emptyList());
+    }
+
+    private static String mapKeyString(Value key, Capture capture) throws Exception {
+        if (key == null) return "null";
+        if (key instanceof StringReference) return ((StringReference) key).value();
+        if (key instanceof ObjectReference && PRIMITIVE_WRAPPER_TYPES.contains(((ObjectReference) key).referenceType().name())) {
+            return unboxed((ObjectReference) key, capture).toString();
+        }
+        return key.toString();
+    }
+
+    /**
+     * Up to {@code max} elements of an ArrayList, LinkedList, HashSet or LinkedHashSet, read from the collection's
+     * internal fields in iteration order. An ArrayList starts at {@code offset}, the linked ones at the node of
+     * {@code cursor}, which is left at the node of the last element read. Returns null for other types or when the
+     * fields are not the expected ones.
+     */
+    private static List<Value> readJdkCollection(ObjectReference collection, String typeName, int offset, int max, Cursor cursor, Capture capture) {
+        switch (typeName) {
+            case "java.util.ArrayList": {
+                List<Value> fields = readFields(collection, "elementData", "size");
+                if (fields == null || !(fields.get(0) instanceof ArrayReference)) return null;
+                int size = ((IntegerValue) fields.get(1)).value();
+                int from = Math.min(offset, size);
+                int count = Math.min(size - from, max);
+                return getValues((ArrayReference) fields.get(0), from, count, capture);
+            }
+            case "java.util.LinkedList": {
+                List<Value> fields = readFields(collection, "first");
+                if (fields == null) return null;
+                List<Value> elements = new ArrayList<>();
+                for (Value node = cursor.node != null ? cursor.node : fields.get(0); node != null && elements.size() < max; ) {
+                    capture.indicator.checkCanceled();
+                    List<Value> nodeFields = readFields((ObjectReference) node, "item", "next");
+                    if (nodeFields == null) return null;
+                    elements.add(nodeFields.get(0));
+                    cursor.node = (ObjectReference) node;
+                    node = nodeFields.get(1);
                 }
-                return jsonObject;
+                return elements;
             }
+            case "java.util.HashSet":
+            case "java.util.LinkedHashSet": {
+                List<Value> fields = readFields(collection, "map");
+                if (fields == null || !(fields.get(0) instanceof ObjectReference)) return null;
+                ObjectReference map = (ObjectReference) fields.get(0);
+                List<Value[]> entries = readJdkMap(map, map.referenceType().name(), max, cursor, capture);
+                if (entries == null) return null;
+                List<Value> keys = new ArrayList<>(entries.size());
+                for (Value[] entry : entries) {
+                    keys.add(entry[0]);
+                }
+                return keys;
+            }
+            default:
+                return null;
+        }
+    }
 
-            if (objRef instanceof ArrayReference) {
-                JsonArray jsonArray = new JsonArray();
-                ArrayReference arrayRef = (ArrayReference) objRef;
-                for (Value element : arrayRef.getValues()) {
-                    jsonArray.add(convertJdiValueToJson(element, frameProxy, visitedIds));
+    /**
+     * Up to {@code max} key/value pairs of a HashMap or LinkedHashMap, read from the map's internal fields in
+     * iteration order, starting at the node (and for a HashMap, the table slot) of {@code cursor}. The cursor is left
+     * at the last entry read. Returns null for other types or when the fields are not the expected ones.
+     */
+    private static List<Value[]> readJdkMap(ObjectReference map, String typeName, int max, Cursor cursor, Capture capture) {
+        List<Value[]> entries = new ArrayList<>();
+        switch (typeName) {
+            case "java.util.HashMap": {
+                List<Value> fields = readFields(map, "table");
+                if (fields == null) return null;
+                if (fields.get(0) == null) return entries;
+                // Bins keep a next chain even once treeified, and HashMap iterates table slot by slot
+                ArrayReference table = (ArrayReference) fields.get(0);
+                Value resume = cursor.node;
+                for (int start = resume != null ? cursor.slot : 0; start < table.length() && entries.size() < max; start += ARRAY_WINDOW) {
+                    capture.indicator.checkCanceled();
+                    List<Value> bins = table.getValues(start, Math.min(ARRAY_WINDOW, table.length() - start));
+                    for (int i = 0; i < bins.size() && entries.size() < max; i++) {
+                        // The page before stopped inside this bin
+                        Value node = resume != null ? resume : bins.get(i);
+                        resume = null;
+                        for (; node != null && entries.size() < max; ) {
+                            List<Value> nodeFields = readFields((ObjectReference) node, "key", "value", "next");
+                            if (nodeFields == null) return null;
+                            entries.add(new Value[]{nodeFields.get(0), nodeFields.get(1)});
+                            cursor.node = (ObjectReference) node;
+                            cursor.slot = start + i;
+                            node = nodeFields.get(2);
+                        }
+                    }
+                }
+                return entries;
+            }
+            case "java.util.LinkedHashMap": {
+                List<Value> fields = readFields(map, "head");
+                if (fields == null) return null;
+                for (Value node = cursor.node != null ? cursor.node : fields.get(0); node != null && entries.size() < max; ) {
+                    capture.indicator.checkCanceled();
+                    List<Value> nodeFields = readFields((ObjectReference) node, "key", "value", "after");
+                    if (nodeFields == null) return null;
+                    entries.add(new Value[]{nodeFields.get(0), nodeFields.get(1)});
+                    cursor.node = (ObjectReference) node;
+                    node = nodeFields.get(2);
                 }
-                return jsonArray;
+                return entries;
             }
+            default:
+                return null;
+        }
+    }
 
-            JsonObject jsonObject = new JsonObject();
-            for (Field field : type.allFields()) {
-                if (field.isStatic()) continue;
-                String fieldName = field.name();
-                Value fieldValue = objRef.getValue(field);
-                jsonObject.add(fieldName, convertJdiValueToJson(fieldValue, frameProxy, visitedIds));
+    // Reads count elements from index from on, ARRAY_WINDOW per request so a capture can be cancelled in between
+    private static List<Value> getValues(ArrayReference array, int from, int count, Capture capture) {
+        List<Value> values = new ArrayList<>(count);
+        for (int start = from; start < from + count; start += ARRAY_WINDOW) {
+            capture.indicator.checkCanceled();
+            values.addAll(array.getValues(start, Math.min(ARRAY_WINDOW, from + count - start)));
+        }
+        return values;
+    }
+
+    /**
+     * Reports a string, cut off at the length limit. JDI's {@link StringReference#value()} always transfers the
+     * whole string, so a long one is read from its backing array instead, only as far as it is shown. That costs a
+     * request of its own, and the whole string is read anyway if the user asks for it, so it is only done when most
+     * of the string would be left out. Strings are immutable, one read at the previous stop is not read again.
+     */
+    private static void visitString(StringReference string, Capture capture, ContextVisitor visitor) {
+        int limit = capture.stringLimit;
+        String value = capture.strings.get(string);
+        if (value == null && capture.previous != null) {
+            value = capture.previous.strings.get(string);
+        }
+        if (value == null && limit > 0) {
+            ReferenceType type = string.referenceType();
+            Field valueField = type.fieldByName("value");
+            Field coderField = type.fieldByName("coder"); // Since Java 9: 0 for Latin-1 bytes, 1 for UTF-16 byte pairs
+            if (valueField != null) {
+                // The array and its coder in one request
+                Map<Field, Value> fields = string.getValues(coderField == null ? List.of(valueField) : List.of(valueField, coderField));
+                Value chars = fields.get(valueField);
+                if (chars instanceof ArrayReference) {
+                    ArrayReference array = (ArrayReference) chars;
+                    int coder = coderField == null ? -1 : ((ByteValue) fields.get(coderField)).value();
+                    int length = coder == 1 ? array.length() / 2 : array.length();
+                    String prefix = length > 2 * limit ? readPrefix(array, coder, capture) : null;
+                    if (prefix != null) {
+                        visitor.partialValue(string, prefix, length);
+                        return;
+                    }
+                }
             }
-            return jsonObject;
+        }
+        if (value == null) {
+            value = string.value();
+        }
+        if (limit > 0 && value.length() <= 2 * limit) {
+            // The limit also bounds what a capture keeps
+            capture.strings.put(string, value);
+        }
+        if (limit > 0 && value.length() > limit) {
+            // Not worth a request of its own, or the layout of the array is not known. Do not end on half of a surrogate pair
+            String prefix = value.substring(0, Character.isHighSurrogate(value.charAt(limit - 1)) ? limit - 1 : limit);
+            visitor.partialValue(string, prefix, value.length());
+        } else {
+            visitor.value(value);
+        }
+    }
 
-        } finally {
-            visitedIds.remove(uniqueID);
+    // The first stringLimit characters from the backing array of a string, or null if its layout is not known
+    private static String readPrefix(ArrayReference array, int coder, Capture capture) {
+        int limit = capture.stringLimit;
+        StringBuilder prefix = new StringBuilder(limit);
+        if (coder < 0) {
+            // Java 8 and older keep a char[]
+            for (Value c : array.getValues(0, limit)) {
+                prefix.append(((CharValue) c).value());
+            }
+        } else if (coder == 0) {
+            for (Value b : array.getValues(0, limit)) {
+                prefix.append((char) (((ByteValue) b).value() & 0xFF));
+            }
+        } else {
+            // UTF-16 strings store each char in the byte order of the debuggee's platform
+            List<ReferenceType> utf16 = capture.cache.classesByName(array.virtualMachine(), "java.lang.StringUTF16");
+            Field shiftField = utf16.isEmpty() ? null : utf16.get(0).fieldByName("HI_BYTE_SHIFT");
+            Value shift = shiftField == null ? null : utf16.get(0).getValue(shiftField);
+            if (!(shift instanceof IntegerValue)) {
+                return null;
+            }
+            int hiShift = ((IntegerValue) shift).value();
+            List<Value> bytes = array.getValues(0, limit * 2);
+            for (int i = 0; i < bytes.size(); i += 2) {
+                int hi = ((ByteValue) bytes.get(i)).value() & 0xFF;
+                int lo = ((ByteValue) bytes.get(i + 1)).value() & 0xFF;
+                prefix.append((char) (hi << hiShift | lo << (8 - hiShift)));
+            }
+        }
+        // Do not end on half of a surrogate pair
+        if (prefix.length() > 0 && Character.isHighSurrogate(prefix.charAt(prefix.length() - 1))) {
+            prefix.setLength(prefix.length() - 1);
+        }
+        return prefix.toString();
+    }
+
+    /**
+     * Describes a primitive array by its type, its length and its first {@code count} elements, e.g.
+     * {@code byte[1048576] [0x50, 0x4b, 0x03, ...]}. {@link ContextSerializer} writes the same form.
+     */
+    private static String primitiveArrayPreview(ArrayReference array, int count) {
+        int length = array.length();
+        StringBuilder preview = new StringBuilder(((ArrayType) array.referenceType()).componentTypeName())
+                .append('[').append(length).append("] [");
+        List<Value> head = length == 0 ? Collections.emptyList() : array.getValues(0, Math.min(length, count));
+        for (int i = 0; i < head.size(); i++) {
+            if (i > 0) preview.append(", ");
+            Value element = head.get(i);
+            if (element instanceof ByteValue) {
+                int b = ((ByteValue) element).value() & 0xFF;
+                preview.append("0x").append(Character.forDigit(b >> 4, 16)).append(Character.forDigit(b & 0xF, 16));
+            } else if (element instanceof CharValue) preview.append(((CharValue) element).value());
+            else if (element instanceof BooleanValue) preview.append(((BooleanValue) element).value());
+            else if (element instanceof ShortValue) preview.append(((ShortValue) element).value());
+            else if (element instanceof IntegerValue) preview.append(((IntegerValue) element).value());
+            else if (element instanceof LongValue) preview.append(((LongValue) element).value());
+            else if (element instanceof FloatValue) preview.append(((FloatValue) element).value());
+            else if (element instanceof DoubleValue) preview.append(((DoubleValue) element).value());
         }
+        if (length > head.size()) {
+            preview.append(head.isEmpty() ? "..." : ", ...");
+        }
+        return preview.append(']').toString();
     }
 
-    // ... (invokeRemoteMethod, isAssignable, and update methods remain unchanged)
-    private static Value invokeRemoteMethod(ObjectReference instance, ThreadReference thread, String methodName, String methodSignature, List<? extends Value> args) throws Exception {
-        List<Method> methods = instance.referenceType().methodsByName(methodName, methodSignature);
+    // Reads the named fields with a single request, or returns null if one of them does not exist
+    private static List<Value> readFields(ObjectReference object, String... names) {
+        ReferenceType type = object.referenceType();
+        List<Field> fields = new ArrayList<>(names.length);
+        for (String name : names) {
+            Field field = type.fieldByName(name);
+            if (field == null) return null;
+            fields.add(field);
+        }
+        Map<Field, Value> values = object.getValues(fields);
+        List<Value> result = new ArrayList<>(names.length);
+        for (Field field : fields) {
+            result.add(values.get(field));
+        }
+        return result;
+    }
+
+    private static Value invokeRemoteMethod(ObjectReference instance, Capture capture, String methodName, String methodSignature, List<? extends Value> args) throws Exception {
+        List<Method> methods = capture.cache.methodsByName(instance.referenceType(), methodName, methodSignature);
         if (methods.isEmpty()) {
             throw new NoSuchMethodException("在 " + instance.referenceType().name() + " 中未找到方法 " + methodName + " 签名 " + methodSignature);
         }
         Method methodToInvoke = methods.get(0);
-        return instance.invokeMethod(thread, methodToInvoke, args, ObjectReference.INVOKE_SINGLE_THREADED);
+        return capture.invokeMethod(instance, methodToInvoke, args);
+    }
+
+    private static boolean isAssignable(ReferenceType type, String targetTypeName, JdiMetadataCache cache) throws ClassNotLoadedException {
+        Boolean cached = cache.getAssignable(type, targetTypeName);
+        if (cached != null) {
+            return cached;
+        }
+        boolean result = computeAssignable(type, targetTypeName, cache);
+        cache.putAssignable(type, targetTypeName, result);
+        return result;
     }
 
-    private static boolean isAssignable(ReferenceType type, String targetTypeName) throws ClassNotLoadedException {
-        // ...
+    private static boolean computeAssignable(ReferenceType type, String targetTypeName, JdiMetadataCache cache) throws ClassNotLoadedException {
         VirtualMachine vm = type.virtualMachine();
-        List<ReferenceType> targetTypes = vm.classesByName(targetTypeName);
+        List<ReferenceType> targetTypes = cache.classesByName(vm, targetTypeName);
         if (targetTypes.isEmpty()) {
             return false;
         }
@@ -268,7 +1051,7 @@ public class ContextValueParser {
             }
             if (current instanceof ClassType) {
                 for (InterfaceType interfaceType : ((ClassType) current).allInterfaces()) {
-                    if (isAssignable(interfaceType, targetTypeName)) return true;
+                    if (isAssignable(interfaceType, targetTypeName, cache)) return true;
                 }
                 queue.add(((ClassType) current).superclass());
             } else if (current instanceof InterfaceType) {
@@ -278,4 +1061,311 @@ public class ContextValueParser {
         return false;
     }
 
+    /**
+     * 一次抓取的状态：元数据缓存、求值上下文和懒加载限制，以及已经读过的对象和显示它们的节点。
+     * 占位节点持有它，之后展开时沿用同样的限制。同一调试会话中上一次停下时的抓取保存在调试进程上，
+     * 其中已拆箱的值和字符串都不可变，按对象身份复用，不再读取。
+     */
+    static final class Capture {
+        final JdiMetadataCache cache;
+        final int maxDepth; // Levels fetched per request, 0 for no limit
+        final int pageSize; // Elements fetched per collection request, 0 for no limit
+        final int stringLimit; // Characters read of a string until the user asks for all, 0 for no limit
+        final int arrayPreview; // Elements shown of a primitive array, 0 to show it like any other array
+        final int invocationTimeoutMs; // 0 waits for method calls as long as they take
+        // Whether an object met again is linked to where it was first converted, or converted again like fastjson
+        // does without reference detection; cycles are cut either way
+        final boolean linkRepeats;
+        // Objects converted so far and the tree node showing each, kept across loads so every object is fetched once
+        final Set<Long> convertedIds = new HashSet<>();
+        final Map<Long, DefaultMutableTreeNode> nodesById = new ConcurrentHashMap<>();
+        // Primitives of the boxed values and contents of the strings read so far; the keys keep the mirrors, and so
+        // their ids, alive
+        final Map<ObjectReference, Value> unboxed = new HashMap<>();
+        final Map<StringReference, String> strings = new HashMap<>();
+        // Remote iterators of pages not loaded yet, kept from collection until loaded or until a newer capture
+        // replaces this one
+        private final Set<ObjectReference> pinned = new HashSet<>();
+        // Capture made at the previous stop of the same session, only set while this one walks the context
+        Capture previous;
+        // Progress, evaluation context and give-up callback of the command currently using the capture
+        ProgressIndicator indicator;
+        EvaluationContextImpl evaluationContext;
+        Consumer<String> giveUp;
+        // Why method calls can no longer be made for this capture, null while they can
+        private volatile String abandoned;
+
+        Capture(JdiMetadataCache cache, int maxDepth, int pageSize, int stringLimit, int arrayPreview,
+                int invocationTimeoutMs, boolean linkRepeats) {
+            this.cache = cache;
+            this.maxDepth = maxDepth;
+            this.pageSize = pageSize;
+            this.stringLimit = stringLimit;
+            this.arrayPreview = arrayPreview;
+            this.invocationTimeoutMs = invocationTimeoutMs;
+            this.linkRepeats = linkRepeats;
+        }
+
+        void pin(ObjectReference object) {
+            if (pinned.add(object)) {
+                object.disableCollection();
+            }
+        }
+
+        boolean isPinned(ObjectReference object) {
+            return pinned.contains(object);
+        }
+
+        void unpin(ObjectReference object) {
+            if (pinned.remove(object)) {
+                enableCollection(object);
+            }
+        }
+
+        void releasePinned() {
+            for (ObjectReference object : pinned) {
+                enableCollection(object);
+            }
+            pinned.clear();
+        }
+
+        private static void enableCollection(ObjectReference object) {
+            try {
+                object.enableCollection();
+            } catch (ObjectCollectedException | VMDisconnectedException e) {
+                // Nothing left to release
+            }
+        }
+
+        Value invokeMethod(ObjectReference object, Method method, List<? extends Value> args) throws Exception {
+            return invoke(() -> evaluationContext.getDebugProcess().invokeInstanceMethod(evaluationContext, object, method, args,
+                    ObjectReference.INVOKE_SINGLE_THREADED));
+        }
+
+        Value invokeMethod(ClassType type, Method method, List<? extends Value> args) throws Exception {
+            return invoke(() -> evaluationContext.getDebugProcess().invokeMethod(evaluationContext, type, method, args));
+        }
+
+        /**
+         * Runs a method invocation through the debugger, which resumes the thread for it and suspends it again,
+         * giving up after the configured timeout or when the capture is cancelled. JDI cannot abort an invocation and
+         * interrupting the thread would leave its flag set in the user's code, so an abandoned call is left to run:
+         * the progress is cancelled, which makes the debugger give up on the command, the command's result is
+         * delivered right away instead of once the call returns, and the capture is marked so that later loads fail
+         * right away instead of finding the thread still busy.
+         */
+        private Value invoke(Callable<Value> invocation) throws Exception {
+            if (abandoned != null) {
+                throw new TimeoutException(abandoned);
+            }
+            indicator.checkCanceled();
+            ProgressIndicator progress = indicator;
+            Consumer<String> commandGiveUp = giveUp;
+            long deadline = invocationTimeoutMs > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(invocationTimeoutMs) : Long.MAX_VALUE;
+            ScheduledFuture<?> watchdog = AppExecutorUtil.getAppScheduledExecutorService().scheduleWithFixedDelay(() -> {
+                if (abandoned != null) {
+                    return;
+                }
+                if (System.nanoTime() - deadline >= 0) {
+                    String reason = "method call did not return within " + invocationTimeoutMs + " ms";
+                    abandoned = reason;
+                    progress.cancel();
+                    commandGiveUp.accept(reason);
+                } else if (progress.isCanceled()) {
+                    abandoned = "a cancelled method call may still be running";
+                    commandGiveUp.accept(null);
+                }
+            }, CANCEL_POLL_MS, CANCEL_POLL_MS, TimeUnit.MILLISECONDS);
+            Value result;
+            try {
+                result = invocation.call();
+            } finally {
+                watchdog.cancel(false);
+            }
+            if (abandoned != null) {
+                // Came back after all, but the command was already given up on
+                throw new TimeoutException(abandoned);
+            }
+            return result;
+        }
+    }
+
+    // A command run by runOnManagerThread; giveUp delivers a result early, see there
+    private interface ManagerAction<T> {
+        T run(SuspendContextImpl suspendContext, ProgressIndicator indicator, Consumer<String> giveUp);
+    }
+
+    // A container being walked: the remote values still to visit in it
+    private static final class Children {
+        final List<String> names; // Member names for objects, null for arrays
+        final List<Value> values;
+        final int depth;
+        final long id; // Unique id of the remote object, -1 for a later page of it
+        final Page rest; // Where the next page starts if the container was cut off, otherwise null
+        int next;
+
+        Children(List<String> names, List<Value> values, int depth, long id, Page rest) {
+            this.names = names;
+            this.values = values;
+            this.depth = depth;
+            this.id = id;
+            this.rest = rest;
+        }
+
+        void begin(ContextVisitor visitor) {
+            if (names != null) {
+                visitor.beginObject(id);
+            } else {
+                visitor.beginArray(id);
+            }
+        }
+
+        void end(ContextVisitor visitor) {
+            if (rest != null) {
+                visitor.truncated(rest);
+            }
+            if (names != null) {
+                visitor.endObject();
+            } else {
+                visitor.endArray();
+            }
+        }
+    }
+
+    /**
+     * Builds the context tree from the walker's events: object members become nodes named after the member, with
+     * their value below, while the elements of collections go straight into the node of the collection.
+     */
+    private static final class TreeVisitor implements ContextVisitor {
+        private final Capture capture;
+        private final Deque<DefaultMutableTreeNode> parents = new ArrayDeque<>();
+        private DefaultMutableTreeNode named; // Node of the member whose value comes next
+
+        TreeVisitor(Capture capture, DefaultMutableTreeNode root) {
+            this.capture = capture;
+            parents.push(root);
+        }
+
+        private DefaultMutableTreeNode target() {
+            DefaultMutableTreeNode target = named != null ? named : parents.peek();
+            named = null;
+            return target;
+        }
+
+        private void begin(long id) {
+            DefaultMutableTreeNode node = target();
+            if (id >= 0) {
+                capture.nodesById.put(id, node);
+            }
+            parents.push(node);
+        }
+
+        @Override
+        public void beginObject(long id) {
+            begin(id);
+        }
+
+        @Override
+        public void endObject() {
+            parents.pop();
+        }
+
+        @Override
+        public void beginArray(long id) {
+            begin(id);
+        }
+
+        @Override
+        public void endArray() {
+            parents.pop();
+        }
+
+        @Override
+        public void name(String name) {
+            DefaultMutableTreeNode child = new DefaultMutableTreeNode(name);
+            parents.peek().add(child);
+            named = child;
+        }
+
+        @Override
+        public void value(String value) {
+            target().add(new DefaultMutableTreeNode(value));
+        }
+
+        @Override
+        public void partialValue(StringReference string, String prefix, int length) {
+            target().add(new PendingContextNode(capture, string, prefix, length));
+        }
+
+        @Override
+        public void number(String literal) {
+            target().add(new DefaultMutableTreeNode(literal));
+        }
+
+        @Override
+        public void value(boolean value) {
+            target().add(new DefaultMutableTreeNode(String.valueOf(value)));
+        }
+
+        @Override
+        public void nullValue() {
+            // Nulls never had a node of their own, the member shows up without children
+            target();
+        }
+
+        @Override
+        public void reference(long id, String label) {
+            target().add(new ContextReferenceNode(capture, id, label));
+        }
+
+        @Override
+        public void deferred(ObjectReference object) {
+            target().add(new PendingContextNode(capture, object));
+        }
+
+        @Override
+        public void truncated(Page rest) {
+            parents.peek().add(new PendingContextNode(capture, rest));
+        }
+    }
+
+    /**
+     * Where the next page of a container cut off at the page size starts: the index of its first element, and
+     * for linked collections and maps the node it is in, so loading it does not walk the earlier pages again.
+     */
+    static final class Page {
+        final ObjectReference container;
+        final int offset;
+        // Node of the first element, or the remote iterator positioned before it; null for arrays and lists read by index
+        final ObjectReference node;
+        final int slot; // HashMap table slot of node
+        final boolean iterator;
+
+        private Page(ObjectReference container, int offset, Cursor cursor, Capture capture) {
+            this.container = container;
+            this.offset = offset;
+            this.node = cursor.node;
+            this.slot = cursor.slot;
+            this.iterator = cursor.iterator;
+            if (iterator) {
+                // Nothing in the debuggee refers to the iterator, it would be collected by the time the page is loaded
+                capture.pin(node);
+            }
+        }
+    }
+
+    // Position while reading a linked container, moved along as its elements are read
+    private static final class Cursor {
+        ObjectReference node;
+        int slot;
+        boolean iterator;
+
+        Cursor(@Nullable Page from) {
+            if (from != null) {
+                node = from.node;
+                slot = from.slot;
+            }
+        }
+    }
+
 }
@@ -0,0 +1,62 @@
+package com.viewer;
+
+import com.sun.jdi.ObjectReference;
+import com.sun.jdi.StringReference;
+
+/**
+ * Receives a captured {@code _context} as a stream of events in document order, the way a JSON writer would
+ * write it: containers are bracketed by begin and end calls, and inside an object every value is preceded by
+ * {@link #name}. {@link ContextValueParser} emits these while it walks the debuggee, so consumers such as the
+ * context tree or a JSON export see the values as they are read and no intermediate document is built.
+ */
+public interface ContextVisitor {
+
+    /**
+     * Starts an object. {@code id} is the unique id of the remote object, or for a context serialized in the
+     * debuggee the number {@link ContextSerializer} gave it; -1 when it is not known.
+     */
+    void beginObject(long id);
+
+    void endObject();
+
+    /**
+     * Starts a collection, array or map read as a list. {@code id} as for {@link #beginObject}.
+     */
+    void beginArray(long id);
+
+    void endArray();
+
+    void name(String name);
+
+    void value(String value);
+
+    /**
+     * A string longer than the length limit: its first characters, its full {@code length}, and the remote string
+     * the rest can be read from.
+     */
+    void partialValue(StringReference string, String prefix, int length);
+
+    /**
+     * A number, as its Java literal. Floating point values may be {@code NaN} or infinite.
+     */
+    void number(String literal);
+
+    void value(boolean value);
+
+    void nullValue();
+
+    /**
+     * An object that was already emitted earlier in the same capture, given by its unique id.
+     */
+    void reference(long id, String label);
+
+    /**
+     * An object that was not read because of the depth limit.
+     */
+    void deferred(ObjectReference object);
+
+    /**
+     * Comes last in a container that was cut off at the page size: {@code rest} tells where its unread elements start.
+     */
+    void truncated(ContextValueParser.Page rest);
+}
@@ -3,22 +3,56 @@ package com.eric;
 import com.alibaba.fastjson.JSON;
 import com.alibaba.fastjson.serializer.SerializerFeature;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * 调试时导出对象为 JSON 文件
+ * <p>
+ * {@link #dump} 在调用线程上同步写出；{@link #dumpAsync} 只把对象放进有界队列就返回，由后台写线程序列化并写盘，
+ * 适合在请求处理线程里调用。两种方式都是边序列化边写入缓冲流，不会先在内存里拼出整个 JSON 字符串。
  */
 public class DebugUtil {
 
     private static final DateTimeFormatter TIME_FORMAT =
             DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss_SSS");
 
+    private static final SerializerFeature[] FEATURES = {
+            SerializerFeature.PrettyFormat,
+            SerializerFeature.WriteDateUseDateFormat,
+            SerializerFeature.DisableCircularReferenceDetect
+    };
+
+    // 队列满了就丢弃，调用线程永远不会被写盘拖住
+    private static final int QUEUE_CAPACITY = 64;
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private static final BlockingQueue<DumpTask> QUEUE = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    // 下面几个字段都由 LOCK 保护：入队时分配序号，写线程写完一个就推进 completed，awaitFlush 据此等待
+    private static final Object LOCK = new Object();
+    private static long submitted;
+    private static long completed;
+    private static long dropped;
+    private static Thread writerThread;
+
     /**
      * 将对象序列化为 JSON 文件，自动加时间戳命名
      *
@@ -26,8 +60,98 @@ public class DebugUtil {
      * @param filePath 输出文件路径，例如 "C:/temp/debug.json"
      */
     public static void dump(Object obj, String filePath) {
+        write(new DumpTask(obj, filePath, false, timestamp()));
+    }
+
+    /**
+     * 异步导出，等同于 {@code dumpAsync(obj, filePath, false)}
+     */
+    public static boolean dumpAsync(Object obj, String filePath) {
+        return dumpAsync(obj, filePath, false);
+    }
+
+    /**
+     * 异步导出：对象放进有界队列后立即返回，由后台写线程序列化并写入文件。
+     * 序列化发生在写线程上，所以对象入队后调用方不应再修改它，需要的话先传一份快照。
+     *
+     * @param obj 要导出的对象
+     * @param filePath 输出文件路径，时间戳取调用时刻
+     * @param gzip 为 true 时压缩写出，文件名追加 ".gz"
+     * @return 入队成功返回 true；队列已满时丢弃本次导出并返回 false
+     */
+    public static boolean dumpAsync(Object obj, String filePath, boolean gzip) {
+        DumpTask task = new DumpTask(obj, filePath, gzip, timestamp());
+        synchronized (LOCK) {
+            // 在锁内入队和分配序号，保证序号顺序就是写线程处理的顺序
+            if (!QUEUE.offer(task)) {
+                // 只计数，由写线程报告，调用线程上不做任何 IO
+                dropped++;
+                return false;
+            }
+            task.sequence = ++submitted;
+            // 写线程按说不会退出，万一死了就换一个，否则之后的导出都会积在队列里
+            if (writerThread == null || !writerThread.isAlive()) {
+                writerThread = new Thread(DebugUtil::writeLoop, "DebugUtil-dump-writer");
+                // 守护线程不会阻止 JVM 退出，退出前需要落盘的话先调用 awaitFlush
+                writerThread.setDaemon(true);
+                writerThread.start();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 等待调用之前入队的异步导出全部写完，主要给测试和退出前使用
+     *
+     * @return 全部写完返回 true，超时返回 false
+     */
+    public static boolean awaitFlush(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (LOCK) {
+            long target = submitted;
+            while (completed < target) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(LOCK, remaining);
+            }
+            return true;
+        }
+    }
+
+    private static void writeLoop() {
+        while (true) {
+            DumpTask task;
+            try {
+                task = QUEUE.take();
+            } catch (InterruptedException e) {
+                // 写线程不会被主动中断，保险起见继续取下一个
+                continue;
+            }
+            try {
+                write(task);
+            } catch (Throwable e) {
+                // 序列化时对象的 getter 可能抛异常，大对象也可能 OOM，都不能让它打断后面的导出
+                System.err.println("[DEBUG] Dump failed: " + e);
+            } finally {
+                long droppedSinceLast;
+                synchronized (LOCK) {
+                    completed = task.sequence;
+                    droppedSinceLast = dropped;
+                    dropped = 0;
+                    LOCK.notifyAll();
+                }
+                if (droppedSinceLast > 0) {
+                    System.err.println("[DEBUG] Dump queue full, dropped " + droppedSinceLast + " dump(s)");
+                }
+            }
+        }
+    }
+
+    private static void write(DumpTask task) {
         try {
-            File file = new File(filePath);
+            File file = new File(task.filePath);
 
             // 自动创建父目录
             File parent = file.getParentFile();
@@ -35,21 +159,18 @@ public class DebugUtil {
                 parent.mkdirs();
             }
 
-            // 自动加时间戳防止覆盖
+            // 自动加时间戳防止覆盖；异步导出可能在同一毫秒内入队多个，再按需追加序号
+            String filePath = task.filePath;
             int dotIndex = filePath.lastIndexOf('.');
-            String timestamp = "_" + LocalDateTime.now().format(TIME_FORMAT);
-            String finalPath = (dotIndex > 0)
-                    ? filePath.substring(0, dotIndex) + timestamp + filePath.substring(dotIndex)
-                    : filePath + timestamp + ".json";
-
-            // 写入 JSON
-            try (FileWriter writer = new FileWriter(finalPath)) {
-                writer.write(JSON.toJSONString(
-                        obj,
-                        SerializerFeature.PrettyFormat,
-                        SerializerFeature.WriteDateUseDateFormat,
-                        SerializerFeature.DisableCircularReferenceDetect
-                ));
+            String base = (dotIndex > 0) ? filePath.substring(0, dotIndex) + task.timestamp : filePath + task.timestamp;
+            String extension = ((dotIndex > 0) ? filePath.substring(dotIndex) : ".json") + (task.gzip ? ".gz" : "");
+            Path finalPath = createNewFile(base, extension);
+
+            // 边序列化边写入缓冲流，fastjson 每攒满一小段就交给 writer
+            try (OutputStream stream = new BufferedOutputStream(new FileOutputStream(finalPath.toFile()), BUFFER_SIZE);
+                 OutputStream out = task.gzip ? new GZIPOutputStream(stream, BUFFER_SIZE) : stream;
+                 Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8)) {
+                JSON.writeJSONString(writer, task.obj, FEATURES);
             }
 
             System.out.println("[DEBUG] JSON dumped to: " + finalPath);
@@ -59,6 +180,37 @@ public class DebugUtil {
         }
     }
 
+    // 同步导出和写线程可能同时挑中同一个名字，CREATE_NEW 保证只有一方建成，另一方换下一个序号重试
+    private static Path createNewFile(String base, String extension) throws IOException {
+        Path path = Paths.get(base + extension);
+        for (int i = 1; ; i++) {
+            try {
+                return Files.createFile(path);
+            } catch (FileAlreadyExistsException e) {
+                path = Paths.get(base + "_" + i + extension);
+            }
+        }
+    }
+
+    private static String timestamp() {
+        return "_" + LocalDateTime.now().format(TIME_FORMAT);
+    }
+
+    private static final class DumpTask {
+        final Object obj;
+        final String filePath;
+        final boolean gzip;
+        final String timestamp;
+        long sequence; // 入队时在 LOCK 内赋值
+
+        DumpTask(Object obj, String filePath, boolean gzip, String timestamp) {
+            this.obj = obj;
+            this.filePath = filePath;
+            this.gzip = gzip;
+            this.timestamp = timestamp;
+        }
+    }
+
     public static void main(String[] args) {
         Map<String, Object> context = new HashMap<>();
         context.put("a", "123213");
@@ -0,0 +1,127 @@
+package com.viewer;
+
+import com.intellij.debugger.engine.DebugProcess;
+import com.intellij.debugger.engine.DebugProcessListener;
+import com.intellij.debugger.engine.DebugProcessImpl;
+import com.intellij.debugger.impl.DebuggerContextListener;
+import com.intellij.debugger.impl.DebuggerSession;
+import com.intellij.debugger.impl.DebuggerStateManager;
+import com.intellij.openapi.util.Key;
+import com.sun.jdi.Method;
+import com.sun.jdi.ReferenceType;
+import com.sun.jdi.VirtualMachine;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Method lookups and assignability checks made while walking the context, kept for one debug session so repeated
+ * captures do not ask the VM the same questions again. The cache lives on the {@link DebugProcessImpl} and goes
+ * away with it; a hot swap clears it because redefined classes get new methods and may get new supertypes.
+ * <p>
+ * The clear has to come after the classes are redefined, anything looked up in between would be cached again from
+ * the old classes. The IDE only reports the end of a reload to whoever started it, so the cache listens for the
+ * session refresh that follows every reload instead; other refreshes just cost a few lookups.
+ */
+public class JdiMetadataCache {
+
+    private static final Key<JdiMetadataCache> KEY = Key.create("variableViewer.jdiMetadataCache");
+
+    private final Map<MemberKey, List<Method>> methods = new ConcurrentHashMap<>();
+    private final Map<MemberKey, Boolean> assignable = new ConcurrentHashMap<>();
+    private final Map<String, List<ReferenceType>> classes = new ConcurrentHashMap<>();
+
+    public static synchronized JdiMetadataCache getInstance(DebuggerSession session) {
+        DebugProcessImpl process = session.getProcess();
+        JdiMetadataCache cache = process.getUserData(KEY);
+        if (cache == null) {
+            JdiMetadataCache created = new JdiMetadataCache();
+            DebuggerStateManager contextManager = session.getContextManager();
+            DebuggerContextListener refreshListener = (newContext, event) -> {
+                if (event == DebuggerSession.Event.REFRESH || event == DebuggerSession.Event.REFRESH_WITH_STACK) {
+                    created.clear();
+                }
+            };
+            contextManager.addListener(refreshListener);
+            process.addDebugProcessListener(new DebugProcessListener() {
+                @Override
+                public void processDetached(@NotNull DebugProcess detachedProcess, boolean closedByUser) {
+                    contextManager.removeListener(refreshListener);
+                    created.clear();
+                }
+            });
+            process.putUserData(KEY, created);
+            cache = created;
+        }
+        return cache;
+    }
+
+    /**
+     * Same as {@link ReferenceType#methodsByName(String, String)}, answered from the cache after the first call.
+     */
+    public List<Method> methodsByName(ReferenceType type, String name, String signature) {
+        return methods.computeIfAbsent(new MemberKey(type, name, signature), key -> type.methodsByName(name, signature));
+    }
+
+    /**
+     * Same as {@link VirtualMachine#classesByName(String)}. Only non-empty results are kept, the class may still
+     * get loaded later.
+     */
+    public List<ReferenceType> classesByName(VirtualMachine vm, String className) {
+        List<ReferenceType> cached = classes.get(className);
+        if (cached != null) {
+            return cached;
+        }
+        List<ReferenceType> loaded = vm.classesByName(className);
+        if (!loaded.isEmpty()) {
+            classes.put(className, loaded);
+        }
+        return loaded;
+    }
+
+    /**
+     * Returns the cached result of an assignability check, or null if {@code type} was not checked against
+     * {@code targetTypeName} yet.
+     */
+    public Boolean getAssignable(ReferenceType type, String targetTypeName) {
+        return assignable.get(new MemberKey(type, targetTypeName, null));
+    }
+
+    public void putAssignable(ReferenceType type, String targetTypeName, boolean result) {
+        assignable.put(new MemberKey(type, targetTypeName, null), result);
+    }
+
+    public void clear() {
+        methods.clear();
+        assignable.clear();
+        classes.clear();
+    }
+
+    private static class MemberKey {
+        private final ReferenceType type;
+        private final String name;
+        private final String signature;
+
+        MemberKey(ReferenceType type, String name, String signature) {
+            this.type = type;
+            this.name = name;
+            this.signature = signature;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof MemberKey)) return false;
+            MemberKey other = (MemberKey) o;
+            return type.equals(other.type) && name.equals(other.name) && Objects.equals(signature, other.signature);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, name, signature);
+        }
+    }
+}
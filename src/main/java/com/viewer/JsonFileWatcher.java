@@ -0,0 +1,77 @@
+package com.viewer;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFileManager;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.util.Alarm;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Runs a callback on the EDT when the watched JSON file changes on disk. The file is registered with the native
+ * file watcher so external writes show up as VFS events, and bursts of events are merged: the callback runs
+ * once, {@link #DEBOUNCE_MS} after the last change.
+ */
+public class JsonFileWatcher {
+
+    private static final int DEBOUNCE_MS = 300;
+
+    private final Alarm alarm;
+    private final Runnable onChange;
+    private volatile String watchedPath;
+    private LocalFileSystem.WatchRequest watchRequest;
+
+    public JsonFileWatcher(Project project, Disposable parent, Runnable onChange) {
+        this.onChange = onChange;
+        this.alarm = new Alarm(Alarm.ThreadToUse.SWING_THREAD, parent);
+        project.getMessageBus().connect(parent).subscribe(VirtualFileManager.VFS_CHANGES, new BulkFileListener() {
+            @Override
+            public void after(@NotNull List<? extends VFileEvent> events) {
+                String path = watchedPath;
+                if (path == null) {
+                    return;
+                }
+                for (VFileEvent event : events) {
+                    if (FileUtil.pathsEqual(path, event.getPath())) {
+                        alarm.cancelAllRequests();
+                        alarm.addRequest(JsonFileWatcher.this.onChange, DEBOUNCE_MS);
+                        return;
+                    }
+                }
+            }
+        });
+        Disposer.register(parent, this::stopWatching);
+    }
+
+    /**
+     * Starts watching {@code filePath}, replacing the previously watched file. Must not be called on the EDT,
+     * the file may have to be loaded into the VFS first.
+     */
+    public synchronized void watch(String filePath) {
+        String path = FileUtil.toSystemIndependentName(filePath);
+        if (path.equals(watchedPath)) {
+            return;
+        }
+        LocalFileSystem fileSystem = LocalFileSystem.getInstance();
+        watchRequest = watchRequest == null
+                ? fileSystem.addRootToWatch(path, false)
+                : fileSystem.replaceWatchedRoot(watchRequest, path, false);
+        // The VFS only reports changes for files it already knows about
+        fileSystem.refreshAndFindFileByPath(path);
+        watchedPath = path;
+    }
+
+    private synchronized void stopWatching() {
+        if (watchRequest != null) {
+            LocalFileSystem.getInstance().removeWatchedRoot(watchRequest);
+            watchRequest = null;
+        }
+        watchedPath = null;
+    }
+}
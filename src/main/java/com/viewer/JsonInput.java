@@ -0,0 +1,88 @@
+package com.viewer;
+
+import com.intellij.util.io.ByteBufferUtil;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only, random access view of UTF-8 encoded JSON bytes.
+ * Files are memory-mapped in 1 GB segments, so nothing is copied onto the heap and inputs above 2 GB still work.
+ * Bytes are only decoded to Strings when a caller asks for a range (see {@link #decode(long, long)}).
+ */
+public class JsonInput implements Closeable {
+
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private final ByteBuffer[] segments;
+    private final long length;
+    private final boolean mapped;
+
+    private JsonInput(ByteBuffer[] segments, long length, boolean mapped) {
+        this.segments = segments;
+        this.length = length;
+        this.mapped = mapped;
+    }
+
+    public static JsonInput map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer[] segments = new ByteBuffer[(int) ((size + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+            for (int i = 0; i < segments.length; i++) {
+                long start = (long) i << SEGMENT_SHIFT;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, size - start));
+            }
+            // The mapping stays valid after the channel is closed
+            return new JsonInput(segments, size, true);
+        }
+    }
+
+    public static JsonInput wrap(byte[] bytes) {
+        ByteBuffer[] segments = bytes.length == 0 ? new ByteBuffer[0] : new ByteBuffer[]{ByteBuffer.wrap(bytes)};
+        return new JsonInput(segments, bytes.length, false);
+    }
+
+    public long length() {
+        return length;
+    }
+
+    public byte get(long position) {
+        return segments[(int) (position >>> SEGMENT_SHIFT)].get((int) (position & SEGMENT_MASK));
+    }
+
+    /**
+     * Decodes the bytes in {@code [start, end)} as UTF-8.
+     */
+    public String decode(long start, long end) {
+        byte[] bytes = new byte[(int) (end - start)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Unmaps the file right away instead of waiting for GC, so the file can be rewritten or deleted
+     * (Windows refuses both while a mapping is open). No reads may happen after this.
+     */
+    @Override
+    public void close() {
+        if (!mapped) {
+            return;
+        }
+        for (int i = 0; i < segments.length; i++) {
+            if (segments[i] instanceof MappedByteBuffer) {
+                ByteBufferUtil.cleanBuffer(segments[i]);
+            }
+            segments[i] = null;
+        }
+    }
+}
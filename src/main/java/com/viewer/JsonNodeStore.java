@@ -0,0 +1,390 @@
+package com.viewer;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar store of the schema nodes extracted by {@link JsonTreeBuilder}. Nodes are plain int ids; links, type
+ * masks, presence counts and key ids live in primitive arrays and every distinct key string is stored once.
+ * This costs about 30 bytes per node, against 150+ for a DefaultMutableTreeNode with a NodeInfo and a child Vector.
+ * <p>
+ * A node stands for every value seen at its position: the type is the union of the observed types and the count
+ * says how many values were seen, so array elements all merge into a single {@code [array_item]} node.
+ */
+public class JsonNodeStore {
+
+    public static final String ARRAY_ITEM_KEY = "[array_item]";
+
+    // Type bits, combined when a position holds values of different types
+    public static final byte TYPE_OBJECT = 1;
+    public static final byte TYPE_ARRAY = 1 << 1;
+    public static final byte TYPE_STRING = 1 << 2;
+    public static final byte TYPE_NUMBER = 1 << 3;
+    public static final byte TYPE_BOOLEAN = 1 << 4;
+    public static final byte TYPE_NULL = 1 << 5;
+
+    private static final int MAX_KEY_BYTES = 1 << 24;
+
+    private static final String[] TYPE_NAMES = {"object", "array", "string", "number", "boolean", "null"};
+
+    private int size;
+    private int[] parents = new int[64];
+    private int[] firstChildren = new int[64];
+    private int[] nextSiblings = new int[64];
+    private int[] lastChildren = new int[64]; // Only needed while nodes are appended
+    private int[] childCounts = new int[64];
+    private int[] counts = new int[64];
+    private int[] keyIds = new int[64];
+    private byte[] types = new byte[64];
+
+    private final List<String> keys = new ArrayList<>();
+    private Map<String, Integer> keyLookup = new HashMap<>();
+    // Open-addressed (parent, key id) -> child table of node ids, -1 in free slots. Every added value is looked up in
+    // it, so it takes no boxing; kept at most half full and dropped once no more nodes will be added
+    private int[] childTable = newChildTable(128);
+    private final int arrayItemKeyId;
+    private int structureVersion; // Bumped when a node is added or a position gains a type, not for counts
+
+    public JsonNodeStore() {
+        arrayItemKeyId = internKey(ARRAY_ITEM_KEY);
+    }
+
+    /**
+     * Records one value of the given type under {@code parent} (-1 for the root) and returns the node for it.
+     * An existing child with the same key is reused, otherwise a node is appended as the last child.
+     */
+    public int addValue(int parent, String key, byte type) {
+        int id = findOrAddChild(parent, internKey(key));
+        if ((types[id] | type) != types[id]) {
+            types[id] |= type;
+            structureVersion++;
+        }
+        counts[id]++;
+        return id;
+    }
+
+    /**
+     * Merges the children of {@code source} in {@code other} into the children of {@code target}: types are
+     * combined and counts added up, as if the values behind {@code source} had been recorded here directly.
+     */
+    public void mergeChildren(int target, JsonNodeStore other, int source) {
+        // Depth-first in document order like a recursive merge, but on an explicit stack so depth costs no
+        // thread stack. Each level holds a pair: the node merged into, and the next child of other to merge
+        int[] stack = {target, other.firstChildren[source]};
+        int top = 2;
+        while (top > 0) {
+            int child = stack[top - 1];
+            if (child < 0) {
+                top -= 2;
+                continue;
+            }
+            stack[top - 1] = other.nextSiblings[child];
+            int merged = findOrAddChild(stack[top - 2], internKey(other.getKey(child)));
+            if ((types[merged] | other.types[child]) != types[merged]) {
+                types[merged] |= other.types[child];
+                structureVersion++;
+            }
+            counts[merged] += other.counts[child];
+            if (top == stack.length) {
+                stack = Arrays.copyOf(stack, top * 2);
+            }
+            stack[top++] = merged;
+            stack[top++] = other.firstChildren[child];
+        }
+    }
+
+    private int findOrAddChild(int parent, int keyId) {
+        int mask = childTable.length - 1;
+        int slot = childSlot(parent, keyId, mask);
+        for (int existing = childTable[slot]; existing >= 0; existing = childTable[slot]) {
+            if (parents[existing] == parent && keyIds[existing] == keyId) {
+                return existing;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int id = size;
+        if (id == parents.length) {
+            grow(id * 2);
+        }
+        parents[id] = parent;
+        firstChildren[id] = -1;
+        nextSiblings[id] = -1;
+        lastChildren[id] = -1;
+        childCounts[id] = 0;
+        counts[id] = 0;
+        keyIds[id] = keyId;
+        types[id] = 0;
+        if (parent >= 0) {
+            if (lastChildren[parent] < 0) {
+                firstChildren[parent] = id;
+            } else {
+                nextSiblings[lastChildren[parent]] = id;
+            }
+            lastChildren[parent] = id;
+            childCounts[parent]++;
+        }
+        childTable[slot] = id;
+        size++;
+        if (size * 2 > childTable.length) {
+            growChildTable();
+        }
+        structureVersion++;
+        return id;
+    }
+
+    // Rehashes every node into a table twice the size
+    private void growChildTable() {
+        childTable = newChildTable(childTable.length * 2);
+        int mask = childTable.length - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = childSlot(parents[id], keyIds[id], mask);
+            while (childTable[slot] >= 0) {
+                slot = (slot + 1) & mask;
+            }
+            childTable[slot] = id;
+        }
+    }
+
+    private static int[] newChildTable(int length) {
+        int[] table = new int[length];
+        Arrays.fill(table, -1);
+        return table;
+    }
+
+    private static int childSlot(int parent, int keyId, int mask) {
+        long key = ((long) parent << 32) | keyId;
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+
+    /**
+     * Drops the spare capacity and the build-only tables once no more nodes will be added.
+     */
+    public void trimToSize() {
+        grow(size);
+        lastChildren = null;
+        keyLookup = null;
+        childTable = null;
+    }
+
+    /**
+     * Returns a trimmed copy of the nodes added so far, which can be read while this store keeps growing.
+     */
+    public JsonNodeStore copy() {
+        JsonNodeStore copy = new JsonNodeStore();
+        copy.keys.addAll(keys.subList(1, keys.size()));
+        copy.size = size;
+        copy.parents = Arrays.copyOf(parents, size);
+        copy.firstChildren = Arrays.copyOf(firstChildren, size);
+        copy.nextSiblings = Arrays.copyOf(nextSiblings, size);
+        copy.childCounts = Arrays.copyOf(childCounts, size);
+        copy.counts = Arrays.copyOf(counts, size);
+        copy.keyIds = Arrays.copyOf(keyIds, size);
+        copy.types = Arrays.copyOf(types, size);
+        copy.lastChildren = null;
+        copy.keyLookup = null;
+        copy.childTable = null;
+        return copy;
+    }
+
+    /**
+     * Changes whenever a node is added or a node's type mask grows, so a reader can tell whether a new snapshot
+     * would show anything new. Counts alone do not change it.
+     */
+    public int getStructureVersion() {
+        return structureVersion;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getParent(int id) {
+        return parents[id];
+    }
+
+    public int getFirstChild(int id) {
+        return firstChildren[id];
+    }
+
+    public int getNextSibling(int id) {
+        return nextSiblings[id];
+    }
+
+    public int getChildCount(int id) {
+        return childCounts[id];
+    }
+
+    public String getKey(int id) {
+        return keys.get(keyIds[id]);
+    }
+
+    public byte getType(int id) {
+        return types[id];
+    }
+
+    public boolean hasType(int id, byte type) {
+        return (types[id] & type) != 0;
+    }
+
+    /**
+     * Number of values seen at this position, e.g. the element count for an array item.
+     */
+    public int getCount(int id) {
+        return counts[id];
+    }
+
+    public String getTypeName(int id) {
+        return typeName(types[id]);
+    }
+
+    /**
+     * Names the types in a mask of TYPE_ bits, e.g. {@code object|null}.
+     */
+    public static String typeName(byte types) {
+        StringBuilder sb = new StringBuilder();
+        for (int bit = 0; bit < TYPE_NAMES.length; bit++) {
+            if ((types & (1 << bit)) != 0) {
+                if (sb.length() > 0) {
+                    sb.append('|');
+                }
+                sb.append(TYPE_NAMES[bit]);
+            }
+        }
+        return sb.toString();
+    }
+
+    public boolean isArrayItem(int id) {
+        return keyIds[id] == arrayItemKeyId;
+    }
+
+    /**
+     * Dotted path used when inserting a node into the editor. Children of the root start the path and array
+     * items are transparent, so {@code orders[].sku} becomes {@code orders.sku}.
+     */
+    public String getPath(int id) {
+        List<String> segments = new ArrayList<>();
+        int current = id;
+        while (true) {
+            int parent = parents[current];
+            if (parent < 0 || parents[parent] < 0) {
+                segments.add(getKey(current));
+                break;
+            }
+            if (!isArrayItem(current)) {
+                segments.add(getKey(current));
+            }
+            current = parent;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            sb.append(segments.get(i));
+            if (i > 0) {
+                sb.append('.');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Writes the keys and, per node, the parent, key id, type mask and count. Sibling links are not written,
+     * {@link #readFrom} rebuilds them because children always get higher ids than their parent.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(keys.size());
+        for (String key : keys) {
+            byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        out.writeInt(size);
+        for (int id = 0; id < size; id++) {
+            out.writeInt(parents[id]);
+            out.writeInt(keyIds[id]);
+            out.writeByte(types[id]);
+            out.writeInt(counts[id]);
+        }
+    }
+
+    /**
+     * Reads a store written by {@link #writeTo}. The result is already trimmed, no values can be added to it.
+     */
+    public static JsonNodeStore readFrom(DataInput in) throws IOException {
+        JsonNodeStore store = new JsonNodeStore();
+        int keyCount = in.readInt();
+        if (keyCount < 1 || !ARRAY_ITEM_KEY.equals(readKey(in))) {
+            throw new IOException("Corrupt schema data");
+        }
+        for (int i = 1; i < keyCount; i++) {
+            store.keys.add(readKey(in));
+        }
+        int size = in.readInt();
+        if (size < 0) {
+            throw new IOException("Corrupt schema data");
+        }
+        store.grow(Math.max(size, 1));
+        for (int id = 0; id < size; id++) {
+            int parent = in.readInt();
+            int keyId = in.readInt();
+            if (parent >= id || parent < -1 || keyId < 0 || keyId >= keyCount) {
+                throw new IOException("Corrupt schema data");
+            }
+            store.parents[id] = parent;
+            store.keyIds[id] = keyId;
+            store.types[id] = in.readByte();
+            store.counts[id] = in.readInt();
+            store.firstChildren[id] = -1;
+            store.nextSiblings[id] = -1;
+            store.lastChildren[id] = -1;
+            if (parent >= 0) {
+                if (store.lastChildren[parent] < 0) {
+                    store.firstChildren[parent] = id;
+                } else {
+                    store.nextSiblings[store.lastChildren[parent]] = id;
+                }
+                store.lastChildren[parent] = id;
+                store.childCounts[parent]++;
+            }
+        }
+        store.size = size;
+        store.trimToSize();
+        return store;
+    }
+
+    private static String readKey(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_KEY_BYTES) {
+            throw new IOException("Corrupt schema data");
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int internKey(String key) {
+        Integer keyId = keyLookup.get(key);
+        if (keyId == null) {
+            keyId = keys.size();
+            keys.add(key);
+            keyLookup.put(key, keyId);
+        }
+        return keyId;
+    }
+
+    private void grow(int capacity) {
+        parents = Arrays.copyOf(parents, capacity);
+        firstChildren = Arrays.copyOf(firstChildren, capacity);
+        nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+        lastChildren = Arrays.copyOf(lastChildren, capacity);
+        childCounts = Arrays.copyOf(childCounts, capacity);
+        counts = Arrays.copyOf(counts, capacity);
+        keyIds = Arrays.copyOf(keyIds, capacity);
+        types = Arrays.copyOf(types, capacity);
+    }
+}
@@ -0,0 +1,189 @@
+package com.viewer;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Case-insensitive substring search over the dotted paths of a {@link JsonNodeStore}, i.e. the strings
+ * {@code NodeInfo.getPath()} returns. Every distinct path is indexed by its trigrams; a query only verifies the
+ * paths listed under its rarest trigram, so lookups stay in the low milliseconds for hundreds of thousands of paths.
+ */
+public class JsonPathIndex {
+
+    private static final long EMPTY = -1; // Trigrams only use the low 48 bits
+
+    private final JsonNodeStore store;
+    private final String[] lowerPaths;
+    private final int[] firstNodeOfPath;
+    private final int[] nextNodeWithSamePath;
+    // Open-addressed trigram table; the paths of trigram slot i are postings[postingStarts[i] .. postingStarts[i + 1]).
+    // It grows while the trigrams are counted and is left alone afterwards
+    private long[] trigramKeys;
+    private int trigramCount;
+    private final int[] postingStarts;
+    private final int[] postings;
+
+    public JsonPathIndex(JsonNodeStore store) {
+        this.store = store;
+        int size = store.size();
+        // Parents always have lower ids, so each path is built from the parent's in one pass
+        String[] nodePaths = new String[size];
+        int[] pathOfNode = new int[size];
+        Map<String, Integer> pathIds = new HashMap<>();
+        for (int id = 0; id < size; id++) {
+            int parent = store.getParent(id);
+            String path;
+            if (parent < 0 || store.getParent(parent) < 0) {
+                path = store.getKey(id);
+            } else if (store.isArrayItem(id)) {
+                path = nodePaths[parent];
+            } else {
+                path = nodePaths[parent] + "." + store.getKey(id);
+            }
+            nodePaths[id] = path;
+            pathOfNode[id] = pathIds.computeIfAbsent(path, p -> pathIds.size());
+        }
+
+        lowerPaths = new String[pathIds.size()];
+        for (Map.Entry<String, Integer> entry : pathIds.entrySet()) {
+            lowerPaths[entry.getValue()] = entry.getKey().toLowerCase(Locale.ROOT);
+        }
+        firstNodeOfPath = new int[lowerPaths.length];
+        Arrays.fill(firstNodeOfPath, -1);
+        nextNodeWithSamePath = new int[size];
+        for (int id = size - 1; id >= 0; id--) {
+            nextNodeWithSamePath[id] = firstNodeOfPath[pathOfNode[id]];
+            firstNodeOfPath[pathOfNode[id]] = id;
+        }
+
+        // Two passes over the trigrams: count the paths per trigram, then fill the posting lists in place.
+        // A single long key can have more distinct trigrams than there are nodes, so the table is grown by load
+        trigramKeys = new long[16];
+        Arrays.fill(trigramKeys, EMPTY);
+        int[][] perSlot = {new int[16], new int[16]}; // Last path seen and path count per slot
+        for (int pathId = 0; pathId < lowerPaths.length; pathId++) {
+            String path = lowerPaths[pathId];
+            for (int i = 0; i + 3 <= path.length(); i++) {
+                long trigram = trigram(path, i);
+                int slot = slot(trigram, false);
+                if (slot < 0) {
+                    if ((trigramCount + 1) * 2 > trigramKeys.length) {
+                        growTable(perSlot);
+                    }
+                    slot = slot(trigram, true);
+                    trigramCount++;
+                }
+                if (perSlot[1][slot] == 0 || perSlot[0][slot] != pathId) {
+                    perSlot[1][slot]++;
+                    perSlot[0][slot] = pathId;
+                }
+            }
+        }
+        int capacity = trigramKeys.length;
+        int[] lastPath = perSlot[0];
+        int[] counts = perSlot[1];
+        postingStarts = new int[capacity + 1];
+        for (int slot = 0; slot < capacity; slot++) {
+            postingStarts[slot + 1] = postingStarts[slot] + counts[slot];
+        }
+        postings = new int[postingStarts[capacity]];
+        int[] fill = Arrays.copyOf(postingStarts, capacity);
+        Arrays.fill(lastPath, -1);
+        for (int pathId = 0; pathId < lowerPaths.length; pathId++) {
+            String path = lowerPaths[pathId];
+            for (int i = 0; i + 3 <= path.length(); i++) {
+                int slot = slot(trigram(path, i), false);
+                if (lastPath[slot] != pathId) {
+                    postings[fill[slot]++] = pathId;
+                    lastPath[slot] = pathId;
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the nodes whose path contains {@code query}, plus all of their ancestors so the tree can reach them.
+     */
+    public BitSet filter(String query) {
+        String needle = query.toLowerCase(Locale.ROOT);
+        BitSet visible = new BitSet(store.size());
+        if (needle.length() < 3) {
+            for (int pathId = 0; pathId < lowerPaths.length; pathId++) {
+                if (lowerPaths[pathId].contains(needle)) {
+                    addPath(visible, pathId);
+                }
+            }
+            return visible;
+        }
+        int rarest = -1;
+        for (int i = 0; i + 3 <= needle.length(); i++) {
+            int slot = slot(trigram(needle, i), false);
+            if (slot < 0) {
+                return visible;
+            }
+            if (rarest < 0 || postingCount(slot) < postingCount(rarest)) {
+                rarest = slot;
+            }
+        }
+        for (int p = postingStarts[rarest]; p < postingStarts[rarest + 1]; p++) {
+            if (lowerPaths[postings[p]].contains(needle)) {
+                addPath(visible, postings[p]);
+            }
+        }
+        return visible;
+    }
+
+    private void addPath(BitSet visible, int pathId) {
+        for (int id = firstNodeOfPath[pathId]; id >= 0; id = nextNodeWithSamePath[id]) {
+            // Stop at the first ancestor that is already in, everything above it is too
+            for (int node = id; node >= 0 && !visible.get(node); node = store.getParent(node)) {
+                visible.set(node);
+            }
+        }
+    }
+
+    // Doubles the trigram table, moving the values kept per slot along with their keys
+    private void growTable(int[][] perSlot) {
+        long[] oldKeys = trigramKeys;
+        trigramKeys = new long[oldKeys.length * 2];
+        Arrays.fill(trigramKeys, EMPTY);
+        int[][] moved = new int[perSlot.length][trigramKeys.length];
+        for (int old = 0; old < oldKeys.length; old++) {
+            if (oldKeys[old] != EMPTY) {
+                int slot = slot(oldKeys[old], true);
+                for (int k = 0; k < perSlot.length; k++) {
+                    moved[k][slot] = perSlot[k][old];
+                }
+            }
+        }
+        System.arraycopy(moved, 0, perSlot, 0, perSlot.length);
+    }
+
+    private int postingCount(int slot) {
+        return postingStarts[slot + 1] - postingStarts[slot];
+    }
+
+    // Returns the table slot of the trigram, claiming a free one if asked to, or -1 if it is not in the table
+    private int slot(long trigram, boolean add) {
+        int mask = trigramKeys.length - 1;
+        int slot = (int) ((trigram * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+        while (trigramKeys[slot] != trigram) {
+            if (trigramKeys[slot] == EMPTY) {
+                if (!add) {
+                    return -1;
+                }
+                trigramKeys[slot] = trigram;
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static long trigram(String s, int start) {
+        return ((long) s.charAt(start) << 32) | ((long) s.charAt(start + 1) << 16) | s.charAt(start + 2);
+    }
+}
@@ -0,0 +1,410 @@
+package com.viewer;
+
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Pull parser that works directly on the bytes of a {@link JsonInput}, with the same call pattern as Gson's
+ * {@code JsonReader}. Gson's reader only accepts a {@code Reader}, which forces every byte of the file through
+ * a charset decoder; here only object keys are decoded, values are skipped at the byte level.
+ */
+public class JsonTokenReader {
+
+    private static final int EMPTY_DOCUMENT = 0;
+    private static final int NONEMPTY_DOCUMENT = 1;
+    private static final int EMPTY_ARRAY = 2;
+    private static final int NONEMPTY_ARRAY = 3;
+    private static final int EMPTY_OBJECT = 4;
+    private static final int DANGLING_NAME = 5;
+    private static final int NONEMPTY_OBJECT = 6;
+
+    private final JsonInput input;
+    private final long end;
+    private long pos;
+
+    private int[] stack = new int[32];
+    private int stackSize = 1;
+    private JsonToken peeked;
+    private boolean implicitArray; // The range holds bare array elements, see forElements()
+
+    public JsonTokenReader(JsonInput input) {
+        this(input, 0, input.length());
+    }
+
+    public JsonTokenReader(JsonInput input, long start, long end) {
+        this.input = input;
+        this.pos = start;
+        this.end = end;
+        stack[0] = EMPTY_DOCUMENT;
+    }
+
+    /**
+     * Reader over a slice returned by {@link #elementBoundaries(long)}: the range holds comma separated elements
+     * without the brackets, and the reader behaves as if {@link #beginArray()} had just been called.
+     */
+    public static JsonTokenReader forElements(JsonInput input, long start, long end) {
+        JsonTokenReader reader = new JsonTokenReader(input, start, end);
+        reader.stack[0] = NONEMPTY_DOCUMENT;
+        reader.push(EMPTY_ARRAY);
+        reader.implicitArray = true;
+        return reader;
+    }
+
+    /**
+     * Byte offset of the next unread byte.
+     */
+    public long position() {
+        return pos;
+    }
+
+    public JsonToken peek() throws IOException {
+        if (peeked == null) {
+            peeked = doPeek();
+        }
+        return peeked;
+    }
+
+    public boolean hasNext() throws IOException {
+        JsonToken token = peek();
+        return token != JsonToken.END_OBJECT && token != JsonToken.END_ARRAY && token != JsonToken.END_DOCUMENT;
+    }
+
+    public void beginObject() throws IOException {
+        expect(JsonToken.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    public void endObject() throws IOException {
+        expect(JsonToken.END_OBJECT);
+        stackSize--;
+    }
+
+    public void beginArray() throws IOException {
+        expect(JsonToken.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    public void endArray() throws IOException {
+        expect(JsonToken.END_ARRAY);
+        stackSize--;
+    }
+
+    public String nextName() throws IOException {
+        expect(JsonToken.NAME);
+        pos++; // opening quote
+        long start = pos;
+        boolean escaped = false;
+        while (true) {
+            byte b = next("Unterminated string");
+            if (b == '"') {
+                break;
+            }
+            if (b == '\\') {
+                escaped = true;
+                next("Unterminated escape sequence");
+            }
+        }
+        return escaped ? unescape(start, pos - 1) : input.decode(start, pos - 1);
+    }
+
+    /**
+     * Skips the next value, including whole objects and arrays, without decoding any of it.
+     */
+    public void skipValue() throws IOException {
+        JsonToken token = peek();
+        peeked = null;
+        switch (token) {
+            case BEGIN_OBJECT:
+            case BEGIN_ARRAY:
+                skipStructure();
+                break;
+            case STRING:
+                pos++;
+                skipString();
+                break;
+            case NUMBER:
+                while (pos < end && isNumberByte(input.get(pos))) {
+                    pos++;
+                }
+                break;
+            case BOOLEAN:
+            case NULL:
+                skipLiteral();
+                break;
+            default:
+                throw new IllegalStateException("Expected a value but was " + token + " at offset " + pos);
+        }
+    }
+
+    /**
+     * Scans ahead, right after {@link #beginArray()}, through the elements of the current array without parsing
+     * them. Returns the offset of the first element, then the offset of a separating comma roughly every
+     * {@code chunkBytes}, and last the offset of the closing bracket. Consecutive offsets delimit slices that
+     * {@link #forElements} can read independently. The reader itself does not move.
+     */
+    public long[] elementBoundaries(long chunkBytes) throws IOException {
+        if (peeked != null || stack[stackSize - 1] != EMPTY_ARRAY) {
+            throw new IllegalStateException("Boundaries can only be taken right after beginArray()");
+        }
+        long[] boundaries = new long[16];
+        int count = 0;
+        boundaries[count++] = pos;
+        long scan = pos;
+        int depth = 0;
+        while (true) {
+            if (scan >= end) {
+                throw new EOFException("Unterminated array at offset " + scan);
+            }
+            byte b = input.get(scan);
+            if (b == '"') {
+                scan = skipString(scan + 1);
+                continue;
+            }
+            if (b == '{' || b == '[') {
+                depth++;
+            } else if (b == '}' || (b == ']' && depth > 0)) {
+                depth--;
+            } else if (b == ']') {
+                break;
+            } else if (b == ',' && depth == 0 && scan - boundaries[count - 1] >= chunkBytes) {
+                if (count == boundaries.length - 1) {
+                    boundaries = Arrays.copyOf(boundaries, count * 2);
+                }
+                boundaries[count++] = scan;
+            }
+            scan++;
+        }
+        boundaries[count++] = scan;
+        return Arrays.copyOf(boundaries, count);
+    }
+
+    /**
+     * Moves to the closing bracket found by {@link #elementBoundaries(long)} once the elements were read elsewhere.
+     */
+    public void skipToArrayEnd(long closingBracket) {
+        peeked = null;
+        pos = closingBracket;
+    }
+
+    private JsonToken doPeek() throws IOException {
+        int scope = stack[stackSize - 1];
+        switch (scope) {
+            case EMPTY_ARRAY: {
+                stack[stackSize - 1] = NONEMPTY_ARRAY;
+                int c = nextNonWhitespace();
+                if (c == ']' || (c == -1 && implicitArray && stackSize == 2)) {
+                    pos++;
+                    return JsonToken.END_ARRAY;
+                }
+                if (implicitArray && stackSize == 2 && c == ',') {
+                    pos++; // Slices after the first start at the comma that separates them from the previous one
+                }
+                break;
+            }
+            case NONEMPTY_ARRAY: {
+                int c = nextNonWhitespace();
+                pos++;
+                if (c == ']' || (c == -1 && implicitArray && stackSize == 2)) {
+                    return JsonToken.END_ARRAY;
+                }
+                if (c != ',') {
+                    throw syntaxError("Unterminated array");
+                }
+                break;
+            }
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT: {
+                stack[stackSize - 1] = DANGLING_NAME;
+                int c = nextNonWhitespace();
+                if (scope == NONEMPTY_OBJECT) {
+                    pos++;
+                    if (c == '}') {
+                        return JsonToken.END_OBJECT;
+                    }
+                    if (c != ',') {
+                        throw syntaxError("Unterminated object");
+                    }
+                    c = nextNonWhitespace();
+                } else if (c == '}') {
+                    pos++;
+                    return JsonToken.END_OBJECT;
+                }
+                if (c != '"') {
+                    throw syntaxError("Expected name");
+                }
+                return JsonToken.NAME;
+            }
+            case DANGLING_NAME:
+                stack[stackSize - 1] = NONEMPTY_OBJECT;
+                if (nextNonWhitespace() != ':') {
+                    throw syntaxError("Expected ':'");
+                }
+                pos++;
+                break;
+            case EMPTY_DOCUMENT:
+                stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+                if (nextNonWhitespace() == -1) {
+                    return JsonToken.END_DOCUMENT;
+                }
+                break;
+            default:
+                if (nextNonWhitespace() == -1) {
+                    return JsonToken.END_DOCUMENT;
+                }
+                throw syntaxError("Did not consume the entire document.");
+        }
+
+        int c = nextNonWhitespace();
+        switch (c) {
+            case -1:
+                throw new EOFException("End of input at offset " + pos);
+            case '{':
+                pos++;
+                return JsonToken.BEGIN_OBJECT;
+            case '[':
+                pos++;
+                return JsonToken.BEGIN_ARRAY;
+            case '"':
+                return JsonToken.STRING;
+            case 't':
+            case 'f':
+                return JsonToken.BOOLEAN;
+            case 'n':
+                return JsonToken.NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    return JsonToken.NUMBER;
+                }
+                throw syntaxError("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    private void skipStructure() throws IOException {
+        // The opening bracket is already consumed; nothing inside is validated, only strings and depth matter
+        int depth = 1;
+        while (depth > 0) {
+            byte b = next("End of input");
+            if (b == '"') {
+                skipString();
+            } else if (b == '{' || b == '[') {
+                depth++;
+            } else if (b == '}' || b == ']') {
+                depth--;
+            }
+        }
+    }
+
+    private void skipString() throws IOException {
+        pos = skipString(pos);
+    }
+
+    // Returns the offset just past the closing quote of a string whose content starts at from
+    private long skipString(long from) throws EOFException {
+        long scan = from;
+        while (true) {
+            if (scan >= end) {
+                throw new EOFException("Unterminated string at offset " + scan);
+            }
+            byte b = input.get(scan++);
+            if (b == '"') {
+                return scan;
+            }
+            if (b == '\\') {
+                scan++;
+            }
+        }
+    }
+
+    private void skipLiteral() throws IOException {
+        byte first = input.get(pos);
+        String literal = first == 't' ? "true" : first == 'f' ? "false" : "null";
+        for (int i = 0; i < literal.length(); i++) {
+            if (pos >= end || input.get(pos) != literal.charAt(i)) {
+                throw syntaxError("Expected " + literal);
+            }
+            pos++;
+        }
+    }
+
+    private String unescape(long start, long stop) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        long runStart = start;
+        long i = start;
+        while (i < stop) {
+            if (input.get(i) != '\\') {
+                i++;
+                continue;
+            }
+            sb.append(input.decode(runStart, i));
+            byte escape = input.get(i + 1);
+            i += 2;
+            switch (escape) {
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'n': sb.append('\n'); break;
+                case 'r': sb.append('\r'); break;
+                case 't': sb.append('\t'); break;
+                case 'u':
+                    if (i + 4 > stop) {
+                        throw syntaxError("Unterminated escape sequence");
+                    }
+                    try {
+                        sb.append((char) Integer.parseInt(input.decode(i, i + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw syntaxError("Malformed Unicode escape");
+                    }
+                    i += 4;
+                    break;
+                default:
+                    sb.append((char) escape);
+            }
+            runStart = i;
+        }
+        return sb.append(input.decode(runStart, stop)).toString();
+    }
+
+    private static boolean isNumberByte(byte b) {
+        return (b >= '0' && b <= '9') || b == '-' || b == '+' || b == '.' || b == 'e' || b == 'E';
+    }
+
+    private int nextNonWhitespace() {
+        while (pos < end) {
+            byte b = input.get(pos);
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return b & 0xFF;
+            }
+            pos++;
+        }
+        return -1;
+    }
+
+    private byte next(String eofMessage) throws EOFException {
+        if (pos >= end) {
+            throw new EOFException(eofMessage + " at offset " + pos);
+        }
+        return input.get(pos++);
+    }
+
+    private void expect(JsonToken expected) throws IOException {
+        JsonToken token = peek();
+        if (token != expected) {
+            throw new IllegalStateException("Expected " + expected + " but was " + token + " at offset " + pos);
+        }
+        peeked = null;
+    }
+
+    private void push(int scope) {
+        if (stackSize == stack.length) {
+            stack = Arrays.copyOf(stack, stackSize * 2);
+        }
+        stack[stackSize++] = scope;
+    }
+
+    private MalformedJsonException syntaxError(String message) {
+        return new MalformedJsonException(message + " at offset " + pos);
+    }
+}
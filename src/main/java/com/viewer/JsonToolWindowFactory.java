@@ -1,16 +1,20 @@
 package com.viewer;// src/main/java/com/yourcompany/jsonstructureviewer/toolwindow/JsonToolWindowFactory.java
 
+import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.command.WriteCommandAction;
 import com.intellij.openapi.editor.Document;
 import com.intellij.openapi.editor.Editor;
 import com.intellij.openapi.fileEditor.FileEditorManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.progress.impl.BackgroundableProcessIndicator;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.ui.Messages;
 import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.openapi.wm.ToolWindowFactory;
+import com.intellij.ui.DocumentAdapter;
+import com.intellij.ui.SearchTextField;
 import com.intellij.ui.components.JBScrollPane;
 import com.intellij.ui.content.Content;
 import com.intellij.ui.content.ContentFactory;
@@ -20,22 +24,42 @@ import com.viewer.JsonViewerSettingsState;
 import org.jetbrains.annotations.NotNull;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+import java.awt.Dimension;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
 
 public class JsonToolWindowFactory implements ToolWindowFactory {
 
+    // Expanding every row of a broad match would take longer than the search itself
+    private static final int MAX_EXPANDED_NODES = 2000;
+
     private Tree tree;
+    private SearchTextField filterField;
     private final JsonTreeBuilder treeBuilder = new JsonTreeBuilder();
+    private final SchemaCache schemaCache = new SchemaCache();
     private Project project; // Store the project instance
+    private JsonFileWatcher fileWatcher;
+    // EDT only: the parse in flight, and whether another one has to follow it
+    private ProgressIndicator runningParse;
+    private boolean parseQueued;
+    // EDT only: the structure currently shown, unfiltered, and the path index over it
+    private JsonNodeStore currentStore;
+    private JsonPathIndex currentIndex;
 
     @Override
     public void createToolWindowContent(@NotNull Project project, @NotNull ToolWindow toolWindow) {
@@ -49,9 +73,21 @@ public class JsonToolWindowFactory implements ToolWindowFactory {
         JButton refreshButton = new JButton("Refresh");
         refreshButton.addActionListener(e -> loadAndParseJsonWithBackgroundTask());
 
+        filterField = new SearchTextField(false);
+        filterField.setMaximumSize(new Dimension(Integer.MAX_VALUE, filterField.getPreferredSize().height));
+        filterField.addDocumentListener(new DocumentAdapter() {
+            @Override
+            protected void textChanged(@NotNull DocumentEvent e) {
+                applyFilter();
+            }
+        });
+
         toolWindowContent.add(refreshButton);
+        toolWindowContent.add(filterField);
         toolWindowContent.add(scrollPane);
 
+        // Re-parse on its own whenever the configured file is rewritten
+        fileWatcher = new JsonFileWatcher(project, toolWindow.getDisposable(), this::loadAndParseJsonWithBackgroundTask);
         loadAndParseJsonWithBackgroundTask();
 
         tree.addMouseListener(new MouseAdapter() {
@@ -68,49 +104,85 @@ public class JsonToolWindowFactory implements ToolWindowFactory {
     }
 
     private void loadAndParseJsonWithBackgroundTask() {
-        String filePath = JsonViewerSettingsState.getInstance().jsonFilePath;
-        if (filePath == null || filePath.trim().isEmpty()) {
-            tree.setModel(new DefaultTreeModel(new DefaultMutableTreeNode("JSON file not configured")));
+        if (runningParse != null) {
+            // Whatever is being parsed is stale now: stop it and start over once it has wound down
+            parseQueued = true;
+            runningParse.cancel();
             return;
         }
 
-        // Practical check: Warn user if file is huge
-        try {
-            File file = new File(filePath);
-            long fileSizeMB = file.length() / (1024 * 1024);
-            if (fileSizeMB > 50) { // Warn for files larger than 50MB
-                int result = Messages.showOkCancelDialog(
-                        project,
-                        "The selected file is very large (" + fileSizeMB + " MB). Parsing may take a while and consume significant memory. Do you want to continue?",
-                        "Large File Warning",
-                        "Continue", "Cancel", Messages.getWarningIcon());
-                if (result != Messages.OK) {
-                    return; // User cancelled
-                }
-            }
-        } catch (Exception e) {
-            // Ignore if file doesn't exist yet
+        String filePath = JsonViewerSettingsState.getInstance().jsonFilePath;
+        if (filePath == null || filePath.trim().isEmpty()) {
+            showMessage("JSON file not configured");
+            return;
         }
 
-
         // Use Task.Backgroundable to run the heavy work on a background thread
-        ProgressManager.getInstance().run(new Task.Backgroundable(project, "Parsing JSON File", true) {
+        Task.Backgroundable task = new Task.Backgroundable(project, "Parsing JSON File", true) {
             private TreeModel newTreeModel;
+            private JsonPathIndex newIndex;
             private String errorMessage;
+            private boolean finished; // EDT only
 
             @Override
             public void run(@NotNull ProgressIndicator indicator) {
                 // This part runs on a BACKGROUND THREAD
-                indicator.setIndeterminate(true);
+                indicator.setIndeterminate(false);
+                indicator.setFraction(0);
                 indicator.setText("Reading and parsing " + new File(filePath).getName());
 
                 try {
-                    String content = new String(Files.readAllBytes(Paths.get(filePath)));
-                    // Check for cancellation before heavy parsing
-                    indicator.checkCanceled();
-                    newTreeModel = treeBuilder.buildTreeModel(content);
+                    fileWatcher.watch(filePath);
+                    Path path = Paths.get(filePath);
+                    SchemaCache.FileKey fileKey = SchemaCache.FileKey.of(path);
+                    JsonNodeStore cached = schemaCache.get(fileKey);
+                    if (cached != null) {
+                        newTreeModel = new LazyJsonTreeModel(cached);
+                    } else {
+                        // The file is mapped rather than read, so its size no longer decides whether we run out of heap
+                        try (JsonInput input = JsonInput.map(path)) {
+                            // Check for cancellation before heavy parsing
+                            indicator.checkCanceled();
+                            newTreeModel = treeBuilder.buildTreeModel(input, new JsonTreeBuilder.ParseMonitor() {
+                                @Override
+                                public void checkCanceled() {
+                                    indicator.checkCanceled();
+                                }
+
+                                @Override
+                                public void progress(double fraction) {
+                                    indicator.setFraction(fraction);
+                                }
+
+                                @Override
+                                public void partialResult(JsonNodeStore snapshot) {
+                                    // Lets the user browse the keys read so far; the filter waits for the index
+                                    ApplicationManager.getApplication().invokeLater(() -> {
+                                        if (!finished && !indicator.isCanceled()) {
+                                            showStructure(snapshot, null);
+                                        }
+                                    });
+                                }
+                            });
+                        }
+                        // Only cache the result if the file did not change while it was parsed
+                        if (newTreeModel instanceof LazyJsonTreeModel && fileKey.equals(SchemaCache.FileKey.of(path))) {
+                            schemaCache.put(fileKey, ((LazyJsonTreeModel) newTreeModel).getStore());
+                        }
+                    }
+                    if (newTreeModel instanceof LazyJsonTreeModel) {
+                        indicator.checkCanceled();
+                        newIndex = new JsonPathIndex(((LazyJsonTreeModel) newTreeModel).getStore());
+                        // Script completion of _context follows the file without waiting for the tree
+                        ContextSchemaIndex.getInstance(project).update(((LazyJsonTreeModel) newTreeModel).getStore());
+                    }
+                } catch (ProcessCanceledException ex) {
+                    throw ex;
                 } catch (IOException | InvalidPathException ex) {
                     errorMessage = "Error reading file: " + ex.getMessage();
+                } catch (InternalError ex) {
+                    // Raised when the mapped file is truncated under us; the watcher queues a fresh parse
+                    errorMessage = "The file changed while it was being read";
                 } catch (Exception ex) {
                     errorMessage = "An unexpected error occurred: " + ex.getMessage();
                 }
@@ -120,8 +192,12 @@ public class JsonToolWindowFactory implements ToolWindowFactory {
             public void onSuccess() {
                 // This part runs on the UI THREAD after the background task is successful
                 if (errorMessage != null) {
-                    tree.setModel(new DefaultTreeModel(new DefaultMutableTreeNode(errorMessage)));
+                    showMessage(errorMessage);
+                } else if (newIndex != null) {
+                    showStructure(((LazyJsonTreeModel) newTreeModel).getStore(), newIndex);
                 } else if (newTreeModel != null) {
+                    currentStore = null;
+                    currentIndex = null;
                     tree.setModel(newTreeModel);
                 }
             }
@@ -129,26 +205,98 @@ public class JsonToolWindowFactory implements ToolWindowFactory {
             @Override
             public void onThrowable(@NotNull Throwable error) {
                 // This part runs on the UI THREAD if an exception occurs
-                tree.setModel(new DefaultTreeModel(new DefaultMutableTreeNode("Failed to parse JSON: " + error.getMessage())));
+                showMessage("Failed to parse JSON: " + error.getMessage());
             }
-        });
+
+            @Override
+            public void onFinished() {
+                // Runs on the UI THREAD after success, cancellation or failure
+                finished = true;
+                runningParse = null;
+                if (parseQueued) {
+                    parseQueued = false;
+                    loadAndParseJsonWithBackgroundTask();
+                }
+            }
+        };
+        runningParse = new BackgroundableProcessIndicator(task);
+        ProgressManager.getInstance().runProcessWithProgressAsynchronously(task, runningParse);
+    }
+
+    private void showMessage(String message) {
+        currentStore = null;
+        currentIndex = null;
+        tree.setModel(new DefaultTreeModel(new DefaultMutableTreeNode(message)));
+    }
+
+    private void showStructure(JsonNodeStore store, JsonPathIndex index) {
+        currentStore = store;
+        currentIndex = index;
+        applyFilter();
+    }
+
+    private void applyFilter() {
+        if (currentStore == null) {
+            return;
+        }
+        String query = filterField.getText().trim();
+        if (query.isEmpty() || currentIndex == null) {
+            setStructureModel(new LazyJsonTreeModel(currentStore));
+            return;
+        }
+        BitSet visible = currentIndex.filter(query);
+        setStructureModel(new LazyJsonTreeModel(currentStore, visible));
+        if (visible.cardinality() <= MAX_EXPANDED_NODES) {
+            // Rows are appended below the one being expanded, so this reaches every match
+            for (int row = 0; row < tree.getRowCount(); row++) {
+                tree.expandRow(row);
+            }
+        }
+    }
+
+    private void setStructureModel(LazyJsonTreeModel model) {
+        // Carry expansion and selection over, so a newer snapshot or filter does not collapse what the user opened
+        TreeModel oldModel = tree.getModel();
+        List<TreePath> expanded = new ArrayList<>();
+        TreePath[] selected = tree.getSelectionPaths();
+        if (oldModel instanceof LazyJsonTreeModel) {
+            Enumeration<TreePath> paths = tree.getExpandedDescendants(new TreePath(oldModel.getRoot()));
+            if (paths != null) {
+                expanded.addAll(Collections.list(paths));
+            }
+        }
+        tree.setModel(model);
+        if (!(oldModel instanceof LazyJsonTreeModel)) {
+            return;
+        }
+        for (TreePath path : expanded) {
+            TreePath translated = model.translate(path);
+            if (translated != null) {
+                tree.expandPath(translated);
+            }
+        }
+        if (selected != null) {
+            for (TreePath path : selected) {
+                TreePath translated = model.translate(path);
+                if (translated != null) {
+                    tree.addSelectionPath(translated);
+                }
+            }
+        }
     }
 
     private void insertTextIntoEditor(Project project) {
         // ... (This method remains the same as before)
-        DefaultMutableTreeNode selectedNode = (DefaultMutableTreeNode) tree.getLastSelectedPathComponent();
-        if (selectedNode == null || !(selectedNode.getUserObject() instanceof JsonTreeBuilder.NodeInfo)) {
+        Object selected = tree.getLastSelectedPathComponent();
+        if (!(selected instanceof JsonTreeBuilder.NodeInfo)) {
             return;
         }
 
-        JsonTreeBuilder.NodeInfo nodeInfo = (JsonTreeBuilder.NodeInfo) selectedNode.getUserObject();
+        JsonTreeBuilder.NodeInfo nodeInfo = (JsonTreeBuilder.NodeInfo) selected;
 
-        DefaultMutableTreeNode parentNode = (DefaultMutableTreeNode) selectedNode.getParent();
-        if (parentNode != null && parentNode.getUserObject() instanceof JsonTreeBuilder.NodeInfo) {
-            JsonTreeBuilder.NodeInfo parentInfo = (JsonTreeBuilder.NodeInfo) parentNode.getUserObject();
-            if ("array".equals(parentInfo.type)) {
-                return;
-            }
+        JsonTreeBuilder.NodeInfo parentInfo = nodeInfo.getParent();
+        if (parentInfo != null && parentInfo.isArray()) {
+            return;
         }
 
         String textToInsert = nodeInfo.getPath();
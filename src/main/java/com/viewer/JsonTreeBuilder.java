@@ -1,91 +1,395 @@
 package com.viewer;// src/main/java/com/yourcompany/jsonstructureviewer/toolwindow/JsonTreeBuilder.java
 
-import com.google.gson.*;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.MalformedJsonException;
+
 import javax.swing.tree.DefaultMutableTreeNode;
 import javax.swing.tree.DefaultTreeModel;
 import javax.swing.tree.TreeModel;
-import java.util.Map;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class JsonTreeBuilder {
 
+    // Arrays smaller than this are read on the calling thread, splitting them would cost more than it saves
+    private static final long PARALLEL_ARRAY_BYTES = 16L << 20;
+    private static final long SLICE_BYTES = 4L << 20;
+    // Values read between two calls to ParseMonitor.checkCanceled()
+    private static final int CHECK_INTERVAL = 4096;
+    // Minimum time between two partial results handed to the ParseMonitor
+    private static final long PUBLISH_INTERVAL_NANOS = 500_000_000L;
+
+    /**
+     * Lets the caller follow a running parse. {@link #checkCanceled()} is called regularly, also from fork-join
+     * workers, and may throw an unchecked exception to abort the parse.
+     */
+    public interface ParseMonitor {
+        ParseMonitor NONE = () -> {
+        };
+
+        void checkCanceled();
+
+        /**
+         * Reports the share of the input consumed so far, between 0 and 1. Also called from fork-join workers.
+         */
+        default void progress(double fraction) {
+        }
+
+        /**
+         * Hands over a copy of the structure read so far, about every half second on the parsing thread. Nodes
+         * keep their ids in later snapshots and in the final result, only types and counts may still change.
+         */
+        default void partialResult(JsonNodeStore snapshot) {
+        }
+    }
+
     public TreeModel buildTreeModel(String jsonContent) {
         if (jsonContent == null || jsonContent.trim().isEmpty()) {
             return new DefaultTreeModel(new DefaultMutableTreeNode("JSON not loaded or empty"));
         }
 
         try {
-            JsonElement rootElement = JsonParser.parseString(jsonContent);
-            DefaultMutableTreeNode rootNode = new DefaultMutableTreeNode("root");
-            buildNode(rootNode, "root", rootElement);
-            return new DefaultTreeModel(rootNode.getFirstChild());
-        } catch (JsonSyntaxException e) {
+            return buildTreeModel(JsonInput.wrap(jsonContent.getBytes(StandardCharsets.UTF_8)));
+        } catch (IOException e) {
+            // An in-memory input never fails on its own, so anything left here is a syntax problem
             return new DefaultTreeModel(new DefaultMutableTreeNode("Error parsing JSON: " + e.getMessage()));
         }
     }
 
-    private void buildNode(DefaultMutableTreeNode parentNode, String key, JsonElement jsonElement) {
-        if (jsonElement.isJsonObject()) {
-            DefaultMutableTreeNode objectNode = new DefaultMutableTreeNode(new NodeInfo(key, "object", parentNode));
-            parentNode.add(objectNode);
-            JsonObject jsonObject = jsonElement.getAsJsonObject();
-            for (Map.Entry<String, JsonElement> entry : jsonObject.entrySet()) {
-                buildNode(objectNode, entry.getKey(), entry.getValue());
+    /**
+     * Builds the structure tree in a single streaming pass. Only keys, types and nesting are kept,
+     * values are skipped as they are read, so memory depends on the schema and not on the input size.
+     * All elements of an array are merged into one {@code [array_item]} node, so fields that only show up in
+     * later elements are not lost. Syntax errors are reported as an error node, other I/O failures are rethrown.
+     */
+    public TreeModel buildTreeModel(JsonInput input) throws IOException {
+        return buildTreeModel(input, ParseMonitor.NONE);
+    }
+
+    public TreeModel buildTreeModel(JsonInput input, ParseMonitor monitor) throws IOException {
+        JsonNodeStore store = new JsonNodeStore();
+        ParseContext context = new ParseContext(input, new JsonTokenReader(input), store, monitor, true);
+        try {
+            if (isEmptyDocument(context.reader)) {
+                return new DefaultTreeModel(new DefaultMutableTreeNode("JSON not loaded or empty"));
+            }
+            buildNode(context, -1, "root");
+            if (context.reader.peek() != JsonToken.END_DOCUMENT) {
+                throw new MalformedJsonException("Did not consume the entire document.");
+            }
+            store.trimToSize();
+            return new LazyJsonTreeModel(store);
+        } catch (MalformedJsonException | EOFException | IllegalStateException | NumberFormatException e) {
+            return new DefaultTreeModel(new DefaultMutableTreeNode("Error parsing JSON: " + e.getMessage()));
+        }
+    }
+
+    private boolean isEmptyDocument(JsonTokenReader reader) throws IOException {
+        try {
+            return reader.peek() == JsonToken.END_DOCUMENT;
+        } catch (EOFException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Records the value at the reader's position under {@code parent}, including everything nested in it.
+     * Nesting is tracked on an explicit stack rather than by recursion, so the depth of the document is only
+     * limited by the heap and not by the stack of the calling thread.
+     */
+    private void buildNode(ParseContext context, int parent, String key) throws IOException {
+        JsonTokenReader reader = context.reader;
+        JsonNodeStore store = context.store;
+        int depth = 0;
+        while (true) {
+            if (++context.valuesSinceCheck == CHECK_INTERVAL) {
+                context.valuesSinceCheck = 0;
+                context.monitor.checkCanceled();
+                if (context.root) {
+                    reportProgress(context);
+                }
+            }
+            JsonToken token = reader.peek();
+            switch (token) {
+                case BEGIN_OBJECT: {
+                    int objectNode = store.addValue(parent, key, JsonNodeStore.TYPE_OBJECT);
+                    reader.beginObject();
+                    depth = context.pushOpen(depth, objectNode);
+                    break;
+                }
+                case BEGIN_ARRAY: {
+                    int arrayNode = store.addValue(parent, key, JsonNodeStore.TYPE_ARRAY);
+                    reader.beginArray();
+                    if (buildElementsInParallel(context, arrayNode)) {
+                        reader.endArray();
+                    } else {
+                        depth = context.pushOpen(depth, ~arrayNode);
+                    }
+                    break;
+                }
+                case STRING:
+                    addPrimitive(context, parent, key, JsonNodeStore.TYPE_STRING);
+                    break;
+                case NUMBER:
+                    addPrimitive(context, parent, key, JsonNodeStore.TYPE_NUMBER);
+                    break;
+                case BOOLEAN:
+                    addPrimitive(context, parent, key, JsonNodeStore.TYPE_BOOLEAN);
+                    break;
+                case NULL:
+                    addPrimitive(context, parent, key, JsonNodeStore.TYPE_NULL);
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected " + token + " at offset " + reader.position());
+            }
+            // Close the containers that are done, then move on to the next value of the innermost open one
+            while (true) {
+                if (depth == 0) {
+                    return;
+                }
+                int open = context.openNodes[depth - 1];
+                if (reader.hasNext()) {
+                    if (open >= 0) {
+                        parent = open;
+                        key = reader.nextName();
+                    } else {
+                        parent = ~open;
+                        key = JsonNodeStore.ARRAY_ITEM_KEY;
+                    }
+                    break;
+                }
+                if (open >= 0) {
+                    reader.endObject();
+                } else {
+                    reader.endArray();
+                }
+                depth--;
+            }
+        }
+    }
+
+    private void reportProgress(ParseContext context) {
+        context.monitor.progress((double) context.reader.position() / context.input.length());
+        long now = System.nanoTime();
+        if (now - context.lastPublished >= PUBLISH_INTERVAL_NANOS) {
+            publish(context);
+        }
+    }
+
+    private void publish(ParseContext context) {
+        context.lastPublished = System.nanoTime();
+        // A snapshot without new keys or types is not worth copying the whole store for
+        int version = context.store.getStructureVersion();
+        if (version == context.publishedVersion) {
+            return;
+        }
+        context.publishedVersion = version;
+        context.monitor.partialResult(context.store.copy());
+    }
+
+    private void addPrimitive(ParseContext context, int parent, String key, byte type) throws IOException {
+        // The value itself is never needed for the structure view
+        context.reader.skipValue();
+        context.store.addValue(parent, key, type);
+    }
+
+    /**
+     * Reads the elements of a large array on the common fork-join pool: the array is cut into slices between
+     * top-level elements, each slice is parsed into its own store and the stores are merged pairwise.
+     * Returns false when the array should be read on the calling thread instead.
+     */
+    private boolean buildElementsInParallel(ParseContext context, int arrayNode) throws IOException {
+        JsonTokenReader reader = context.reader;
+        long start = reader.position();
+        if (!context.root || start < context.scannedUntil
+                || context.input.length() - start < PARALLEL_ARRAY_BYTES
+                || ForkJoinPool.getCommonPoolParallelism() < 2) {
+            return false;
+        }
+        long[] boundaries = reader.elementBoundaries(SLICE_BYTES);
+        long arrayEnd = boundaries[boundaries.length - 1];
+        // Arrays nested in this one are not worth another scan
+        context.scannedUntil = arrayEnd;
+        if (arrayEnd - start < PARALLEL_ARRAY_BYTES) {
+            return false;
+        }
+        context.sliceBytesDone.set(0);
+        ElementsTask task = new ElementsTask(context, boundaries, 0, boundaries.length - 1);
+        ForkJoinPool.commonPool().execute(task);
+        context.store.mergeChildren(arrayNode, awaitElements(context, task), 0);
+        reader.skipToArrayEnd(arrayEnd);
+        return true;
+    }
+
+    // Waits for the slices while the monitor keeps getting cancellation checks and partial results
+    private JsonNodeStore awaitElements(ParseContext context, ElementsTask task) throws IOException {
+        while (true) {
+            try {
+                return task.get(PUBLISH_INTERVAL_NANOS, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                try {
+                    context.monitor.checkCanceled();
+                } catch (RuntimeException | Error canceled) {
+                    // The slices read the input, which the caller unmaps once this throws, so wait for all of
+                    // them. Cancelling the task would not stop them, it only makes the join return at once;
+                    // they see the cancellation through the same monitor and stop at their next check.
+                    task.quietlyJoin();
+                    throw canceled;
+                }
+                publish(context);
+            } catch (InterruptedException e) {
+                // The slices read the input, which the caller is about to close
+                task.quietlyJoin();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while parsing array elements");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof UncheckedIOException) {
+                    throw ((UncheckedIOException) cause).getCause();
+                }
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IOException(cause);
             }
-        } else if (jsonElement.isJsonArray()) {
-            DefaultMutableTreeNode arrayNode = new DefaultMutableTreeNode(new NodeInfo(key, "array", parentNode));
-            parentNode.add(arrayNode);
-            JsonArray jsonArray = jsonElement.getAsJsonArray();
-            if (!jsonArray.isEmpty()) {
-                // We only build the structure from the first element as per the requirement
-                buildNode(arrayNode, "[array_item]", jsonArray.get(0));
+        }
+    }
+
+    private static class ParseContext {
+        final JsonInput input;
+        final JsonTokenReader reader;
+        final JsonNodeStore store;
+        final ParseMonitor monitor;
+        // Only the top-level context splits arrays and reports progress, slices are parsed with contexts of their own
+        final boolean root;
+        final AtomicLong sliceBytesDone = new AtomicLong();
+        long scannedUntil;
+        long lastPublished = System.nanoTime();
+        int publishedVersion = -1;
+        int valuesSinceCheck;
+        // Objects and arrays buildNode is inside of, arrays stored as the complement of their node
+        int[] openNodes = new int[32];
+
+        ParseContext(JsonInput input, JsonTokenReader reader, JsonNodeStore store, ParseMonitor monitor, boolean root) {
+            this.input = input;
+            this.reader = reader;
+            this.store = store;
+            this.monitor = monitor;
+            this.root = root;
+        }
+
+        int pushOpen(int depth, int node) {
+            if (depth == openNodes.length) {
+                openNodes = Arrays.copyOf(openNodes, depth * 2);
             }
-        } else if (jsonElement.isJsonPrimitive()) {
-            JsonPrimitive primitive = jsonElement.getAsJsonPrimitive();
-            String type;
-            if (primitive.isString()) {
-                type = "string";
-            } else if (primitive.isNumber()) {
-                type = "number";
-            } else if (primitive.isBoolean()) {
-                type = "boolean";
-            } else {
-                type = "primitive";
+            openNodes[depth] = node;
+            return depth + 1;
+        }
+    }
+
+    // Parses the array slices [from, to) into a store whose root (id 0) stands for the array
+    private class ElementsTask extends RecursiveTask<JsonNodeStore> {
+        private final ParseContext parent;
+        private final long[] boundaries;
+        private final int from;
+        private final int to;
+
+        ElementsTask(ParseContext parent, long[] boundaries, int from, int to) {
+            this.parent = parent;
+            this.boundaries = boundaries;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected JsonNodeStore compute() {
+            if (to - from == 1) {
+                JsonNodeStore store = new JsonNodeStore();
+                int root = store.addValue(-1, "root", JsonNodeStore.TYPE_ARRAY);
+                JsonTokenReader reader = JsonTokenReader.forElements(parent.input, boundaries[from], boundaries[to]);
+                ParseContext context = new ParseContext(parent.input, reader, store, parent.monitor, false);
+                try {
+                    while (reader.hasNext()) {
+                        buildNode(context, root, JsonNodeStore.ARRAY_ITEM_KEY);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                long done = parent.sliceBytesDone.addAndGet(boundaries[to] - boundaries[from]);
+                parent.monitor.progress((double) (boundaries[0] + done) / parent.input.length());
+                return store;
+            }
+            int mid = (from + to) >>> 1;
+            ElementsTask left = new ElementsTask(parent, boundaries, from, mid);
+            left.fork();
+            JsonNodeStore right;
+            try {
+                right = new ElementsTask(parent, boundaries, mid, to).compute();
+            } catch (RuntimeException | Error e) {
+                // The input gets unmapped once the parse ends, so no slice may still be running by then
+                left.quietlyJoin();
+                throw e;
             }
-            DefaultMutableTreeNode primitiveNode = new DefaultMutableTreeNode(new NodeInfo(key, type, parentNode));
-            parentNode.add(primitiveNode);
-        } else if (jsonElement.isJsonNull()) {
-            DefaultMutableTreeNode nullNode = new DefaultMutableTreeNode(new NodeInfo(key, "null", parentNode));
-            parentNode.add(nullNode);
+            JsonNodeStore merged = left.join();
+            // Left first, so keys keep the order in which they first appear in the file
+            merged.mergeChildren(0, right, 0);
+            return merged;
         }
     }
 
-    // Helper class to store node information and build path
+    // Tree node of LazyJsonTreeModel, a thin view of one node in the JsonNodeStore
     public static class NodeInfo {
         public final String key;
         public final String type;
-        private final DefaultMutableTreeNode parent; // To build the path
+        private final NodeInfo parent;
+        final JsonNodeStore store;
+        final int id;
+        final int indexInParent;
+        int[] childIds; // Filled by LazyJsonTreeModel when the node is expanded
+        NodeInfo[] children;
 
-        public NodeInfo(String key, String type, DefaultMutableTreeNode parent) {
-            this.key = key;
-            this.type = type;
+        NodeInfo(JsonNodeStore store, int id, NodeInfo parent, int indexInParent) {
+            this.store = store;
+            this.id = id;
             this.parent = parent;
+            this.indexInParent = indexInParent;
+            this.key = store.getKey(id);
+            this.type = store.getTypeName(id);
+        }
+
+        public NodeInfo getParent() {
+            return parent;
+        }
+
+        public boolean isArray() {
+            return store.hasType(id, JsonNodeStore.TYPE_ARRAY);
         }
 
         public String getPath() {
-            if (parent == null || "root".equals(((NodeInfo) parent.getUserObject()).key)) {
-                return key;
-            }
-            // Recursively build path, but stop if we hit an array item
-            if ("[array_item]".equals(key)) {
-                return ((NodeInfo) parent.getUserObject()).getPath();
-            }
-            return ((NodeInfo) parent.getUserObject()).getPath() + "." + key;
+            return store.getPath(id);
         }
 
         @Override
         public String toString() {
-            // How the node is displayed in the tree
+            // How the node is displayed in the tree, with the presence ratio for fields missing from some values
+            int parentId = store.getParent(id);
+            if (parentId >= 0 && store.getCount(id) < store.getCount(parentId)) {
+                return key + ": " + type + " (" + store.getCount(id) + "/" + store.getCount(parentId) + ")";
+            }
             return key + ": " + type;
         }
     }
-}
\ No newline at end of file
+}
@@ -33,19 +33,40 @@ public class JsonViewerConfigurable implements Configurable {
     @Override
     public boolean isModified() {
         JsonViewerSettingsState settings = JsonViewerSettingsState.getInstance();
-        return !mySettingsComponent.getJsonFilePath().equals(settings.jsonFilePath);
+        return !mySettingsComponent.getJsonFilePath().equals(settings.jsonFilePath)
+                || mySettingsComponent.isContextLazyLoading() != settings.contextLazyLoading
+                || mySettingsComponent.getContextMaxDepth() != settings.contextMaxDepth
+                || mySettingsComponent.getContextPageSize() != settings.contextPageSize
+                || mySettingsComponent.getContextStringLimit() != settings.contextStringLimit
+                || mySettingsComponent.getContextArrayPreview() != settings.contextArrayPreview
+                || mySettingsComponent.getContextInvocationTimeoutMs() != settings.contextInvocationTimeoutMs
+                || mySettingsComponent.isContextAutoCapture() != settings.contextAutoCapture;
     }
 
     @Override
     public void apply() {
         JsonViewerSettingsState settings = JsonViewerSettingsState.getInstance();
         settings.jsonFilePath = mySettingsComponent.getJsonFilePath();
+        settings.contextLazyLoading = mySettingsComponent.isContextLazyLoading();
+        settings.contextMaxDepth = mySettingsComponent.getContextMaxDepth();
+        settings.contextPageSize = mySettingsComponent.getContextPageSize();
+        settings.contextStringLimit = mySettingsComponent.getContextStringLimit();
+        settings.contextArrayPreview = mySettingsComponent.getContextArrayPreview();
+        settings.contextInvocationTimeoutMs = mySettingsComponent.getContextInvocationTimeoutMs();
+        settings.contextAutoCapture = mySettingsComponent.isContextAutoCapture();
     }
 
     @Override
     public void reset() {
         JsonViewerSettingsState settings = JsonViewerSettingsState.getInstance();
         mySettingsComponent.setJsonFilePath(settings.jsonFilePath);
+        mySettingsComponent.setContextLazyLoading(settings.contextLazyLoading);
+        mySettingsComponent.setContextMaxDepth(settings.contextMaxDepth);
+        mySettingsComponent.setContextPageSize(settings.contextPageSize);
+        mySettingsComponent.setContextStringLimit(settings.contextStringLimit);
+        mySettingsComponent.setContextArrayPreview(settings.contextArrayPreview);
+        mySettingsComponent.setContextInvocationTimeoutMs(settings.contextInvocationTimeoutMs);
+        mySettingsComponent.setContextAutoCapture(settings.contextAutoCapture);
     }
 
     @Override
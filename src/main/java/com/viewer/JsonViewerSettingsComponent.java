@@ -2,6 +2,8 @@ package com.viewer;// src/main/java/com/yourcompany/jsonstructureviewer/settings
 
 import com.intellij.openapi.fileChooser.FileChooserDescriptor;
 import com.intellij.openapi.ui.TextFieldWithBrowseButton;
+import com.intellij.ui.JBIntSpinner;
+import com.intellij.ui.components.JBCheckBox;
 import com.intellij.ui.components.JBLabel;
 import com.intellij.util.ui.FormBuilder;
 
@@ -11,6 +13,13 @@ public class JsonViewerSettingsComponent {
 
     private final JPanel myMainPanel;
     private final TextFieldWithBrowseButton myJsonFilePath = new TextFieldWithBrowseButton();
+    private final JBCheckBox myContextLazyLoading = new JBCheckBox("Load debugger context on demand");
+    private final JBIntSpinner myContextMaxDepth = new JBIntSpinner(3, 1, 100);
+    private final JBIntSpinner myContextPageSize = new JBIntSpinner(100, 1, 100000);
+    private final JBIntSpinner myContextStringLimit = new JBIntSpinner(1000, 16, 10000000);
+    private final JBIntSpinner myContextArrayPreview = new JBIntSpinner(16, 1, 10000);
+    private final JBIntSpinner myContextInvocationTimeout = new JBIntSpinner(5000, 0, 600000, 500);
+    private final JBCheckBox myContextAutoCapture = new JBCheckBox("Capture debugger context whenever the debugger pauses");
 
     public JsonViewerSettingsComponent() {
         myJsonFilePath.addBrowseFolderListener("Select JSON File", null, null,
@@ -18,6 +27,14 @@ public class JsonViewerSettingsComponent {
 
         myMainPanel = FormBuilder.createFormBuilder()
                 .addLabeledComponent(new JBLabel("JSON file path: "), myJsonFilePath, 1, false)
+                .addComponent(myContextLazyLoading, 1)
+                .addTooltip("Reads the context level by level over the debugger; turn off to serialize it in the debuggee in one call, which is much faster for large contexts")
+                .addLabeledComponent(new JBLabel("Context levels per load: "), myContextMaxDepth, 1, false)
+                .addLabeledComponent(new JBLabel("Collection elements per load: "), myContextPageSize, 1, false)
+                .addLabeledComponent(new JBLabel("Characters shown of long strings: "), myContextStringLimit, 1, false)
+                .addLabeledComponent(new JBLabel("Elements shown of primitive arrays: "), myContextArrayPreview, 1, false)
+                .addLabeledComponent(new JBLabel("Method call timeout in ms (0 = none): "), myContextInvocationTimeout, 1, false)
+                .addComponent(myContextAutoCapture, 1)
                 .addComponentFillVertically(new JPanel(), 0)
                 .getPanel();
     }
@@ -37,4 +54,60 @@ public class JsonViewerSettingsComponent {
     public void setJsonFilePath(String newText) {
         myJsonFilePath.setText(newText);
     }
+
+    public boolean isContextLazyLoading() {
+        return myContextLazyLoading.isSelected();
+    }
+
+    public void setContextLazyLoading(boolean lazyLoading) {
+        myContextLazyLoading.setSelected(lazyLoading);
+    }
+
+    public int getContextMaxDepth() {
+        return myContextMaxDepth.getNumber();
+    }
+
+    public void setContextMaxDepth(int maxDepth) {
+        myContextMaxDepth.setNumber(maxDepth);
+    }
+
+    public int getContextPageSize() {
+        return myContextPageSize.getNumber();
+    }
+
+    public void setContextPageSize(int pageSize) {
+        myContextPageSize.setNumber(pageSize);
+    }
+
+    public int getContextStringLimit() {
+        return myContextStringLimit.getNumber();
+    }
+
+    public void setContextStringLimit(int stringLimit) {
+        myContextStringLimit.setNumber(stringLimit);
+    }
+
+    public int getContextArrayPreview() {
+        return myContextArrayPreview.getNumber();
+    }
+
+    public void setContextArrayPreview(int arrayPreview) {
+        myContextArrayPreview.setNumber(arrayPreview);
+    }
+
+    public int getContextInvocationTimeoutMs() {
+        return myContextInvocationTimeout.getNumber();
+    }
+
+    public void setContextInvocationTimeoutMs(int timeoutMs) {
+        myContextInvocationTimeout.setNumber(timeoutMs);
+    }
+
+    public boolean isContextAutoCapture() {
+        return myContextAutoCapture.isSelected();
+    }
+
+    public void setContextAutoCapture(boolean autoCapture) {
+        myContextAutoCapture.setSelected(autoCapture);
+    }
 }
\ No newline at end of file
@@ -15,6 +15,13 @@ import org.jetbrains.annotations.Nullable;
 public class JsonViewerSettingsState implements PersistentStateComponent<JsonViewerSettingsState> {
 
     public String jsonFilePath = "";
+    public boolean contextLazyLoading = true;
+    public int contextMaxDepth = 3;
+    public int contextPageSize = 100;
+    public int contextStringLimit = 1000;
+    public int contextArrayPreview = 16;
+    public int contextInvocationTimeoutMs = 5000;
+    public boolean contextAutoCapture = true;
 
     public static JsonViewerSettingsState getInstance() {
         return ApplicationManager.getApplication().getService(JsonViewerSettingsState.class);
@@ -0,0 +1,130 @@
+package com.viewer;
+
+import com.viewer.JsonTreeBuilder.NodeInfo;
+
+import javax.swing.event.EventListenerList;
+import javax.swing.event.TreeModelListener;
+import javax.swing.tree.TreeModel;
+import javax.swing.tree.TreePath;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Read-only tree model over a {@link JsonNodeStore}. A {@link NodeInfo} is only created when the tree asks
+ * for that child, i.e. when its parent gets expanded, so unexpanded subtrees cost nothing beyond the store.
+ * <p>
+ * With a filter, only the nodes set in it are shown; the filter has to contain the ancestors of every node in it.
+ */
+public class LazyJsonTreeModel implements TreeModel {
+
+    private final JsonNodeStore store;
+    private final BitSet filter; // Null shows every node
+    private final NodeInfo root;
+    private final EventListenerList listeners = new EventListenerList();
+
+    public LazyJsonTreeModel(JsonNodeStore store) {
+        this(store, null);
+    }
+
+    public LazyJsonTreeModel(JsonNodeStore store, BitSet filter) {
+        this.store = store;
+        this.filter = filter;
+        this.root = new NodeInfo(store, 0, null, 0);
+    }
+
+    public JsonNodeStore getStore() {
+        return store;
+    }
+
+    /**
+     * Finds the path to the same schema node in this model, given a path from a model over the same store or an
+     * earlier snapshot of it. Returns null if the node is not shown here.
+     */
+    public TreePath translate(TreePath path) {
+        Object[] components = path.getPath();
+        NodeInfo current = root;
+        TreePath result = new TreePath(root);
+        for (int i = 1; i < components.length; i++) {
+            if (!(components[i] instanceof NodeInfo)) {
+                return null;
+            }
+            NodeInfo wanted = (NodeInfo) components[i];
+            // Siblings are kept in id order
+            int index = Arrays.binarySearch(childIds(current), wanted.id);
+            if (index < 0 || !store.getKey(wanted.id).equals(wanted.key)) {
+                return null;
+            }
+            current = (NodeInfo) getChild(current, index);
+            result = result.pathByAddingChild(current);
+        }
+        return result;
+    }
+
+    @Override
+    public Object getRoot() {
+        return root;
+    }
+
+    @Override
+    public Object getChild(Object parent, int childIndex) {
+        NodeInfo parentInfo = (NodeInfo) parent;
+        int[] childIds = childIds(parentInfo);
+        NodeInfo child = parentInfo.children[childIndex];
+        if (child == null) {
+            child = new NodeInfo(store, childIds[childIndex], parentInfo, childIndex);
+            parentInfo.children[childIndex] = child;
+        }
+        return child;
+    }
+
+    @Override
+    public int getChildCount(Object parent) {
+        NodeInfo parentInfo = (NodeInfo) parent;
+        return filter == null ? store.getChildCount(parentInfo.id) : childIds(parentInfo).length;
+    }
+
+    private int[] childIds(NodeInfo parentInfo) {
+        if (parentInfo.childIds == null) {
+            // Walk the sibling chain once so later lookups by index are constant time
+            int[] childIds = new int[store.getChildCount(parentInfo.id)];
+            int count = 0;
+            for (int next = store.getFirstChild(parentInfo.id); next >= 0; next = store.getNextSibling(next)) {
+                if (filter == null || filter.get(next)) {
+                    childIds[count++] = next;
+                }
+            }
+            parentInfo.childIds = count == childIds.length ? childIds : Arrays.copyOf(childIds, count);
+            parentInfo.children = new NodeInfo[count];
+        }
+        return parentInfo.childIds;
+    }
+
+    @Override
+    public boolean isLeaf(Object node) {
+        return getChildCount(node) == 0;
+    }
+
+    @Override
+    public int getIndexOfChild(Object parent, Object child) {
+        if (!(parent instanceof NodeInfo) || !(child instanceof NodeInfo)) {
+            return -1;
+        }
+        NodeInfo childInfo = (NodeInfo) child;
+        return childInfo.getParent() == parent ? childInfo.indexInParent : -1;
+    }
+
+    @Override
+    public void valueForPathChanged(TreePath path, Object newValue) {
+        // The structure view is read-only
+    }
+
+    @Override
+    public void addTreeModelListener(TreeModelListener l) {
+        listeners.add(TreeModelListener.class, l);
+    }
+
+    @Override
+    public void removeTreeModelListener(TreeModelListener l) {
+        listeners.remove(TreeModelListener.class, l);
+    }
+}
@@ -0,0 +1,52 @@
+package com.viewer;
+
+import com.sun.jdi.ObjectReference;
+import com.sun.jdi.StringReference;
+
+import javax.swing.tree.DefaultMutableTreeNode;
+
+/**
+ * Placeholder in the context tree for a part of {@code _context} that was not fetched yet: an object below the
+ * depth limit, the remaining elements of a collection cut off at the page size, or a string cut off at the length
+ * limit, which shows its first characters.
+ * {@link ContextValueParser#loadPending} fetches it while the debuggee is still paused.
+ */
+public class PendingContextNode extends DefaultMutableTreeNode {
+
+    final ContextValueParser.Capture capture;
+    final ObjectReference value;
+    final int offset; // First element or character still to load, -1 for an object that was not expanded yet
+    final ContextValueParser.Page page; // Where the remaining elements start, null unless this is a later page
+
+    PendingContextNode(ContextValueParser.Capture capture, ObjectReference value) {
+        super("...");
+        this.capture = capture;
+        this.value = value;
+        this.offset = -1;
+        this.page = null;
+    }
+
+    PendingContextNode(ContextValueParser.Capture capture, ContextValueParser.Page page) {
+        super("Load more...");
+        this.capture = capture;
+        this.value = page.container;
+        this.offset = page.offset;
+        this.page = page;
+    }
+
+    PendingContextNode(ContextValueParser.Capture capture, StringReference value, String prefix, int length) {
+        super(prefix + "... (" + length + " chars)");
+        this.capture = capture;
+        this.value = value;
+        this.offset = prefix.length();
+        this.page = null;
+    }
+
+    public boolean isDeferred() {
+        return offset < 0;
+    }
+
+    public boolean isPartialString() {
+        return value instanceof StringReference;
+    }
+}
@@ -0,0 +1,232 @@
+package com.viewer;
+
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.CRC32C;
+
+/**
+ * Keeps the extracted structure of JSON files on disk, in the IDE system directory, so reopening an unchanged
+ * file skips the parse. There is one entry per file path, checked against size, modification time and a content
+ * hash. Once the directory grows past its cap, the least recently used entries are deleted.
+ */
+public class SchemaCache {
+
+    private static final Logger LOG = Logger.getInstance(SchemaCache.class);
+
+    private static final int MAGIC = 0x4A534331; // "JSC1"
+    private static final int FORMAT_VERSION = 1;
+    private static final String ENTRY_SUFFIX = ".schema";
+    private static final long DEFAULT_MAX_BYTES = 64L << 20;
+
+    private final Path directory;
+    private final long maxBytes;
+
+    public SchemaCache() {
+        this(Paths.get(PathManager.getSystemPath(), "variableViewer", "schema-cache"), DEFAULT_MAX_BYTES);
+    }
+
+    public SchemaCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the cached structure for the file state described by {@code key}, or null.
+     */
+    public synchronized JsonNodeStore get(FileKey key) {
+        Path entry = entryPath(key);
+        if (!Files.isRegularFile(entry)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(entry), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION || !key.equals(FileKey.read(in))) {
+                return null;
+            }
+            JsonNodeStore store = JsonNodeStore.readFrom(in);
+            // The modification time doubles as the LRU timestamp
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            return store;
+        } catch (IOException e) {
+            LOG.warn("Dropping unreadable schema cache entry " + entry, e);
+            deleteQuietly(entry);
+            return null;
+        }
+    }
+
+    public synchronized void put(FileKey key, JsonNodeStore store) {
+        Path entry = entryPath(key);
+        Path temp = entry.resolveSibling(entry.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(directory);
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                key.write(out);
+                store.writeTo(out);
+            }
+            try {
+                Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+            evict(entry);
+        } catch (IOException e) {
+            LOG.warn("Could not write schema cache entry " + entry, e);
+            deleteQuietly(temp);
+        }
+    }
+
+    // Deletes the least recently used entries until the directory fits into maxBytes, always keeping the newest one
+    private void evict(Path newest) throws IOException {
+        List<Path> entries = new ArrayList<>();
+        long total = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + ENTRY_SUFFIX)) {
+            for (Path entry : stream) {
+                entries.add(entry);
+                total += Files.size(entry);
+            }
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+        entries.sort(Comparator.comparingLong(SchemaCache::lastModified));
+        for (Path entry : entries) {
+            if (total <= maxBytes) {
+                break;
+            }
+            if (entry.equals(newest)) {
+                continue;
+            }
+            long size = Files.size(entry);
+            deleteQuietly(entry);
+            total -= size;
+        }
+    }
+
+    private Path entryPath(FileKey key) {
+        // One entry per file; the rest of the key is checked against the header
+        return directory.resolve(Long.toHexString(hash64(key.path)) + ENTRY_SUFFIX);
+    }
+
+    private static long hash64(String s) {
+        long h = 1125899906842597L;
+        for (int i = 0; i < s.length(); i++) {
+            h = 31 * h + s.charAt(i);
+        }
+        return h;
+    }
+
+    private static long lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Identity of one state of a file. The content hash covers the first and last 64 KB plus 16 blocks spread
+     * over the rest, so computing it costs the same few reads for a 1 KB file and a 1 GB one.
+     */
+    public static class FileKey {
+        private static final int EDGE_BYTES = 64 * 1024;
+        private static final int SAMPLE_BYTES = 4 * 1024;
+        private static final int SAMPLES = 16;
+
+        final String path;
+        final long size;
+        final long modified;
+        final long contentHash;
+
+        FileKey(String path, long size, long modified, long contentHash) {
+            this.path = path;
+            this.size = size;
+            this.modified = modified;
+            this.contentHash = contentHash;
+        }
+
+        public static FileKey of(Path file) throws IOException {
+            Path absolute = file.toAbsolutePath().normalize();
+            try (FileChannel channel = FileChannel.open(absolute, StandardOpenOption.READ)) {
+                long size = channel.size();
+                CRC32C crc = new CRC32C();
+                hashRange(channel, crc, 0, Math.min(size, EDGE_BYTES));
+                if (size > 2L * EDGE_BYTES) {
+                    long stride = (size - 2L * EDGE_BYTES) / (SAMPLES + 1);
+                    for (int i = 1; i <= SAMPLES; i++) {
+                        hashRange(channel, crc, EDGE_BYTES + i * stride, SAMPLE_BYTES);
+                    }
+                }
+                if (size > EDGE_BYTES) {
+                    long tailStart = Math.max(EDGE_BYTES, size - EDGE_BYTES);
+                    hashRange(channel, crc, tailStart, size - tailStart);
+                }
+                long modified = Files.getLastModifiedTime(absolute).toMillis();
+                return new FileKey(absolute.toString(), size, modified, crc.getValue());
+            }
+        }
+
+        private static void hashRange(FileChannel channel, CRC32C crc, long position, long length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate((int) length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            crc.update(buffer);
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeUTF(path);
+            out.writeLong(size);
+            out.writeLong(modified);
+            out.writeLong(contentHash);
+        }
+
+        static FileKey read(DataInputStream in) throws IOException {
+            return new FileKey(in.readUTF(), in.readLong(), in.readLong(), in.readLong());
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof FileKey)) return false;
+            FileKey other = (FileKey) o;
+            return size == other.size && modified == other.modified && contentHash == other.contentHash
+                    && path.equals(other.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, size, modified, contentHash);
+        }
+    }
+}
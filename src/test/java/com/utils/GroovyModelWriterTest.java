@@ -0,0 +1,88 @@
+package com.utils;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class GroovyModelWriterTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void unchangedSchemaWritesNothing() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        Map<String, Map<String, String>> classes = classes("Root", "order", "Order", "Order", "id", "int");
+        assertEquals(2, new GroovyModelWriter(directory, "p").write(classes));
+        Path order = directory.resolve("Order.groovy");
+        FileTime written = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(order, written);
+
+        assertEquals(0, new GroovyModelWriter(directory, "p").write(classes(
+                "Root", "order", "Order", "Order", "id", "int")));
+        assertEquals(written, Files.getLastModifiedTime(order));
+    }
+
+    @Test
+    public void rewritesOnlyChangedClasses() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        new GroovyModelWriter(directory, "p").write(classes("Root", "order", "Order", "Order", "id", "int"));
+        Path root = directory.resolve("Root.groovy");
+        FileTime written = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(root, written);
+
+        assertEquals(1, new GroovyModelWriter(directory, "p").write(classes(
+                "Root", "order", "Order", "Order", "id", "long")));
+        assertEquals(written, Files.getLastModifiedTime(root));
+        assertTrue(new String(Files.readAllBytes(directory.resolve("Order.groovy")), StandardCharsets.UTF_8).contains("long id"));
+    }
+
+    @Test
+    public void deletesStaleClassesButNotOtherFiles() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        Path own = Files.write(directory.resolve("Handwritten.groovy"), new byte[]{'x'});
+        new GroovyModelWriter(directory, "p").write(classes("Root", "order", "Order", "Order", "id", "int"));
+
+        // Root changed, Item is new and Order is gone
+        assertEquals(3, new GroovyModelWriter(directory, "p").write(classes("Root", "item", "Item", "Item", "id", "int")));
+        assertFalse(Files.exists(directory.resolve("Order.groovy")));
+        assertTrue(Files.exists(directory.resolve("Item.groovy")));
+        assertTrue(Files.exists(own));
+    }
+
+    @Test
+    public void rejectsClassNamesThatDifferOnlyInCase() throws IOException {
+        Path directory = folder.getRoot().toPath();
+        Map<String, Map<String, String>> classes = classes("Root", "a", "UserId", "UserId", "id", "int");
+        classes.put("UserID", Collections.singletonMap("id", "int"));
+        try {
+            new GroovyModelWriter(directory, "p").write(classes);
+            fail("UserId and UserID would share a file on a case-insensitive file system");
+        } catch (IOException expected) {
+            assertFalse(Files.exists(directory.resolve("Root.groovy")));
+        }
+    }
+
+    // A root class with one property holding a second class, which has one property of its own
+    private static Map<String, Map<String, String>> classes(String root, String property, String type,
+                                                            String nested, String nestedProperty, String nestedType) {
+        Map<String, Map<String, String>> classes = new LinkedHashMap<>();
+        classes.put(root, new LinkedHashMap<>(Collections.singletonMap(property, type)));
+        classes.put(nested, new LinkedHashMap<>(Collections.singletonMap(nestedProperty, nestedType)));
+        return classes;
+    }
+}
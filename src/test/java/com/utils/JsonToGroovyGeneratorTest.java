@@ -0,0 +1,95 @@
+package com.utils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+
+public class JsonToGroovyGeneratorTest {
+
+    @Test
+    public void widensIntegersToLongAndDouble() throws IOException {
+        Map<String, Map<String, String>> classes = infer("[{\"n\":1,\"m\":1},{\"n\":3000000000,\"m\":2},{\"n\":1.5,\"m\":3000000000}]");
+        assertEquals("double", classes.get("ContextRoot").get("n"));
+        assertEquals("long", classes.get("ContextRoot").get("m"));
+    }
+
+    @Test
+    public void joinsBigIntegerAndDoubleToBigDecimal() throws IOException {
+        Map<String, Map<String, String>> classes = infer("[{\"n\":123456789012345678901234567890,\"b\":123456789012345678901234567890},{\"n\":1.5,\"b\":1}]");
+        assertEquals("BigDecimal", classes.get("ContextRoot").get("n"));
+        assertEquals("BigInteger", classes.get("ContextRoot").get("b"));
+    }
+
+    @Test
+    public void boxesMissingAndNullProperties() throws IOException {
+        Map<String, Map<String, String>> classes = infer("[{\"a\":1,\"b\":true,\"d\":2},{\"a\":null,\"d\":3},{\"c\":\"x\",\"d\":4}]");
+        Map<String, String> root = classes.get("ContextRoot");
+        assertEquals("Integer", root.get("a"));
+        assertEquals("Boolean", root.get("b"));
+        assertEquals("String", root.get("c"));
+        assertEquals("int", root.get("d"));
+    }
+
+    @Test
+    public void mergesClassesWithTheSameName() throws IOException {
+        Map<String, Map<String, String>> classes = infer("{\"order\":{\"id\":1},\"orders\":[{\"id\":2,\"total\":1.5}]}");
+        assertEquals("{order=Order, orders=List<Order>}", classes.get("ContextRoot").toString());
+        assertEquals("{id=int, total=Double}", classes.get("Order").toString());
+        assertEquals(2, classes.size());
+    }
+
+    @Test(timeout = 30_000)
+    public void smallBatchesMatchSequentialInference() throws IOException {
+        String json = document(new Random(42));
+        // A batch that never fills up keeps the whole array for one sequential inference at its end
+        String sequential = infer(json, Integer.MAX_VALUE).toString();
+        for (int tokensPerBatch : new int[]{1, 2, 3, 7, 50, 1000}) {
+            assertEquals("batches of " + tokensPerBatch, sequential, infer(json, tokensPerBatch).toString());
+        }
+    }
+
+    // Arrays of objects whose properties vary by element, nested arrays, nulls and one element far larger than the rest
+    private static String document(Random random) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 200; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"id\":").append(random.nextInt(4) == 0 ? 5_000_000_000L + i : i);
+            if (random.nextBoolean()) json.append(",\"name\":\"n").append(i).append('"');
+            // Properties keep turning up for the first time, so their order shows the order elements were joined in
+            json.append(",\"p").append(i / 3).append("\":").append(i);
+            if (random.nextInt(5) == 0) json.append(",\"score\":").append(random.nextInt(3) == 0 ? "null" : "1.5");
+            json.append(",\"tags\":[");
+            for (int t = random.nextInt(4); t > 0; t--) {
+                json.append("\"t\"").append(t > 1 ? "," : "");
+            }
+            json.append("],\"items\":[");
+            int items = i == 100 ? 500 : random.nextInt(3);
+            for (int j = 0; j < items; j++) {
+                if (j > 0) json.append(',');
+                json.append("{\"sku\":").append(j);
+                if (random.nextInt(3) == 0) json.append(",\"price\":").append(j).append(".25");
+                if (random.nextInt(7) == 0) json.append(",\"meta\":{\"flag\":true,\"codes\":[1,2]}");
+                json.append('}');
+            }
+            json.append("]}");
+        }
+        return json.append(']').toString();
+    }
+
+    private static Map<String, Map<String, String>> infer(String json) throws IOException {
+        return infer(json, 1 << 14);
+    }
+
+    private static Map<String, Map<String, String>> infer(String json, int tokensPerBatch) throws IOException {
+        try (JsonParser parser = new JsonFactory().createParser(json)) {
+            return new JsonToGroovyGenerator(ForkJoinPool.commonPool(), 2, tokensPerBatch).inferClasses(parser, "ContextRoot");
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.viewer;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JsonPathIndexTest {
+
+    @Test(timeout = 10_000)
+    public void indexesKeyWithMoreTrigramsThanNodes() {
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < 62; i++) {
+            key.append((char) ('a' + i % 26)).append(i % 10);
+        }
+        JsonNodeStore store = new JsonNodeStore();
+        int root = store.addValue(-1, "root", JsonNodeStore.TYPE_OBJECT);
+        int leaf = store.addValue(root, key.toString(), JsonNodeStore.TYPE_STRING);
+
+        JsonPathIndex index = new JsonPathIndex(store);
+
+        BitSet visible = index.filter(key.substring(40, 60).toUpperCase());
+        assertTrue(visible.get(leaf));
+        assertTrue(visible.get(root));
+        assertEquals(0, index.filter("zz9zz").cardinality());
+    }
+
+    @Test(timeout = 10_000)
+    public void findsPathsAcrossManyLongKeys() {
+        JsonNodeStore store = new JsonNodeStore();
+        int root = store.addValue(-1, "root", JsonNodeStore.TYPE_OBJECT);
+        int parent = store.addValue(root, "orders", JsonNodeStore.TYPE_ARRAY);
+        int item = store.addValue(parent, JsonNodeStore.ARRAY_ITEM_KEY, JsonNodeStore.TYPE_OBJECT);
+        int[] leaves = new int[200];
+        for (int i = 0; i < leaves.length; i++) {
+            leaves[i] = store.addValue(item, "field_" + i + "_with_a_rather_long_descriptive_name_" + (i * 7919), JsonNodeStore.TYPE_NUMBER);
+        }
+
+        JsonPathIndex index = new JsonPathIndex(store);
+
+        for (int i = 0; i < leaves.length; i++) {
+            BitSet visible = index.filter("orders.field_" + i + "_with");
+            assertTrue(visible.get(leaves[i]));
+            assertTrue(visible.get(item));
+        }
+        assertEquals(0, index.filter("missing_key").cardinality());
+    }
+}